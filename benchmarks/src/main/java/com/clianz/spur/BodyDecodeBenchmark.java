@@ -0,0 +1,66 @@
+package com.clianz.spur;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.clianz.spur.helpers.BoonJsonCodec;
+import com.clianz.spur.helpers.Endpoint;
+import com.clianz.spur.helpers.ValidationMode;
+import com.clianz.spur.models.Pet;
+
+import io.undertow.util.Methods;
+
+/**
+ * The CPU part of Req.parseBody once the bytes have arrived: JSON decoding into the body class and bean validation, using the
+ * decoder and validator an endpoint resolves at startup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BodyDecodeBenchmark {
+
+    @Param({ "ENABLED", "FAIL_FAST", "DISABLED" })
+    public ValidationMode validationMode;
+
+    private Endpoint<Pet> endpoint;
+    private byte[] body;
+
+    @Setup
+    public void setup() {
+        endpoint = new Endpoint<>(Methods.POST, "/pet", null, Pet.class);
+        endpoint.setValidationMode(validationMode);
+        endpoint.setJsonCodec(new BoonJsonCodec());
+        body = "{\"name\":\"Rex\",\"type\":\"dog\",\"legs\":4,\"tags\":[\"good\",\"boy\",\"fetch\"]}".getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Object decodeAndValidate() throws Exception {
+        Pet pet = endpoint.getBodyDecoder()
+                .decode(body);
+        Validator validator = endpoint.getValidator();
+        if (validator == null) {
+            return pet;
+        }
+        Set<ConstraintViolation<Pet>> violations = validator.validate(pet);
+        return violations.isEmpty() ? pet : violations;
+    }
+}
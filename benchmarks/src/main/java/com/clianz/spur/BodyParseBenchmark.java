@@ -0,0 +1,71 @@
+package com.clianz.spur;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.boon.json.JsonFactory;
+import org.boon.json.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.clianz.spur.helpers.BoonJsonCodec;
+import com.clianz.spur.helpers.JsonCodec;
+import com.clianz.spur.models.Pet;
+
+/**
+ * JSON request body parsing the old way, decoding the received bytes into a String first (receiveFullString), against parsing
+ * the received bytes directly as Req.parseBody does now. Run with {@code -prof gc} to compare gc.alloc.rate.norm.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BodyParseBenchmark {
+
+    /**
+     * Number of tags, to vary the body size.
+     */
+    @Param({ "3", "300" })
+    public int tags;
+
+    private ObjectMapper objectMapper;
+    private JsonCodec.Decoder<Pet> decoder;
+    private byte[] body;
+
+    @Setup
+    public void setup() {
+        objectMapper = JsonFactory.createUseJSONDates();
+        decoder = new BoonJsonCodec().decoder(Pet.class);
+        StringBuilder json = new StringBuilder("{\"name\":\"Rex\",\"type\":\"dog\",\"legs\":4,\"tags\":[");
+        for (int i = 0; i < tags; i++) {
+            json.append(i == 0 ? "" : ",")
+                    .append("\"tag-")
+                    .append(i)
+                    .append('"');
+        }
+        body = json.append("]}")
+                .toString()
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Pet viaString() {
+        return objectMapper.readValue(new String(body, StandardCharsets.UTF_8), Pet.class);
+    }
+
+    @Benchmark
+    public Pet fromBytes() throws Exception {
+        return decoder.decode(body);
+    }
+}
@@ -0,0 +1,84 @@
+package com.clianz.spur;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.clianz.spur.helpers.AuthHandler;
+import com.clianz.spur.helpers.BasicAuthenticator;
+import com.clianz.spur.helpers.CorsHandler;
+import com.clianz.spur.helpers.CorsPolicy;
+import com.clianz.spur.helpers.CredentialCache;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+
+/**
+ * The auth and CORS wrappers SpurServer puts in front of the router, built the same way, ending in a handler that only consumes
+ * the exchange. Only the accepted, cached path is measured, as rejection ends the exchange and needs a live connection.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HandlerChainBenchmark {
+
+    private static final String ALLOWED_ORIGIN = "https://app.example.com";
+
+    @Param({ "true", "false" })
+    public boolean withOrigin;
+
+    private HttpHandler chain;
+    private HttpServerExchange exchange;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        SpurOptions options = new SpurOptions().enableCorsHeaders("https://www.example.com, " + ALLOWED_ORIGIN)
+                .enableBasicAuth("user", "secret")
+                .authCache(TimeUnit.HOURS.toMillis(1), 10_000);
+        String authorization = "Basic " + Base64.getEncoder()
+                .encodeToString("user:secret".getBytes(StandardCharsets.UTF_8));
+
+        HttpHandler terminal = blackhole::consume;
+        HttpHandler cors = new CorsHandler(terminal, new CorsPolicy(options.corsHeaders, options.corsMaxAge,
+                options.corsAllowedHeaders, options.corsAllowRequestedHeaders));
+        BasicAuthenticator users = new BasicAuthenticator().user(options.basicAuthUser, options.basicAuthPassword);
+        CredentialCache cache = new CredentialCache(options.authCacheTtlMillis, options.authCacheMaxEntries);
+        // A miss is verified on a worker thread, which needs a live connection, so only the cached path is measured.
+        cache.put(authorization, users.authenticate(authorization.substring("Basic ".length())));
+        chain = new AuthHandler(cors, Collections.singletonList(users), cache);
+
+        exchange = new HttpServerExchange(null);
+        exchange.getRequestHeaders()
+                .put(Headers.AUTHORIZATION, authorization);
+        if (withOrigin) {
+            exchange.getRequestHeaders()
+                    .put(Headers.ORIGIN, ALLOWED_ORIGIN);
+        }
+    }
+
+    @Benchmark
+    public void authAndCors() throws Exception {
+        // CORS adds to Vary, which would otherwise grow on every call.
+        exchange.getResponseHeaders()
+                .clear();
+        chain.handleRequest(exchange);
+    }
+}
@@ -0,0 +1,125 @@
+package com.clianz.spur;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.clianz.spur.models.Pet;
+
+/**
+ * End-to-end requests against an in-process server over loopback, using keep-alive connections from several client threads.
+ * This covers everything the micro benchmarks leave out: HTTP parsing, the full handler chain, body receipt and the write.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class LoopbackLoadBenchmark {
+
+    private static final int PORT = 18182;
+    private static final String BASE_URL = "http://localhost:" + PORT;
+    private static final byte[] PET_JSON = "{\"name\":\"Rex\",\"type\":\"dog\",\"legs\":4,\"tags\":[\"good\",\"boy\"]}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    @State(Scope.Benchmark)
+    public static class Server {
+        private SpurServer server;
+
+        @Setup
+        public void setup() {
+            Pet pet = new Pet("Rex", "dog", 4, Arrays.asList("good", "boy"));
+            server = new SpurServer().get("/hello", (req, res) -> res.send("Hello World"))
+                    .get("/pet", (req, res) -> res.send(pet))
+                    .post("/pet", Pet.class, (req, res) -> res.send(req.body()));
+            server.start(new SpurOptions().host("localhost")
+                    .port(PORT));
+        }
+
+        @TearDown
+        public void tearDown() {
+            server.stop();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        private final byte[] readBuffer = new byte[8192];
+        private URL helloUrl;
+        private URL petUrl;
+
+        @Setup
+        public void setup() throws IOException {
+            helloUrl = new URL(BASE_URL + "/hello");
+            petUrl = new URL(BASE_URL + "/pet");
+        }
+
+        private int get(URL url) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            return readFully(connection);
+        }
+
+        private int post(URL url, byte[] body) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            return readFully(connection);
+        }
+
+        /**
+         * Reads the response to the end so the JDK returns the connection to its keep-alive cache.
+         */
+        private int readFully(HttpURLConnection connection) throws IOException {
+            if (connection.getResponseCode() != 200) {
+                throw new IOException("Unexpected status " + connection.getResponseCode() + " from " + connection.getURL());
+            }
+            int total = 0;
+            try (InputStream in = connection.getInputStream()) {
+                int read;
+                while ((read = in.read(readBuffer)) != -1) {
+                    total += read;
+                }
+            }
+            return total;
+        }
+    }
+
+    @Benchmark
+    public int getText(Server server, Client client) throws IOException {
+        return client.get(client.helloUrl);
+    }
+
+    @Benchmark
+    public int getJson(Server server, Client client) throws IOException {
+        return client.get(client.petUrl);
+    }
+
+    @Benchmark
+    public int postJson(Server server, Client client) throws IOException {
+        return client.post(client.petUrl, PET_JSON);
+    }
+}
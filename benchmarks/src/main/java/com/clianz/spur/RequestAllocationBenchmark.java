@@ -0,0 +1,114 @@
+package com.clianz.spur;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-request allocation of the server's hot path: parsing, routing, Req/Res, headers and the response write. The client writes
+ * a canned request on one keep-alive socket and reads the fixed-size response into a reused buffer, so it allocates nothing.
+ * <p>
+ * Run with {@code -prof gc}. On Java 21+, gc.alloc.rate.norm counts every thread and so is the server's cost per request; on
+ * older JVMs it only sees the client thread, so add {@code -prof com.clianz.spur.ServerAllocationProfiler} for the server IO
+ * threads' allocation per request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class RequestAllocationBenchmark {
+
+    private static final int PORT = 18183;
+
+    @Param({ "/hello", "/headers" })
+    public String path;
+
+    private SpurServer server;
+    private Socket socket;
+    private OutputStream out;
+    private InputStream in;
+    private byte[] request;
+    private byte[] response;
+
+    @Setup
+    public void setup() throws IOException {
+        server = new SpurServer().get("/hello", (req, res) -> res.send("Hello World"))
+                .get("/headers", (req, res) -> res.header("Cache-Control", "no-store")
+                        .header("X-Request-Source", "benchmark")
+                        .send("Hello World"));
+        server.start(new SpurOptions().host("localhost")
+                .port(PORT));
+
+        request = ("GET " + path + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        socket = new Socket("localhost", PORT);
+        socket.setTcpNoDelay(true);
+        out = socket.getOutputStream();
+        in = socket.getInputStream();
+        // Every response has the same length (the Date header is fixed width), so measure it once.
+        response = new byte[responseLength()];
+    }
+
+    @TearDown(Level.Iteration)
+    public void endIteration() {
+        ServerAllocationProfiler.iterationEnded();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        socket.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public int request() throws IOException {
+        out.write(request);
+        int total = 0;
+        while (total < response.length) {
+            int read = in.read(response, total, response.length - total);
+            if (read < 0) {
+                throw new IOException("Connection closed after " + total + " bytes");
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private int responseLength() throws IOException {
+        out.write(request);
+        StringBuilder head = new StringBuilder();
+        while (!head.toString()
+                .endsWith("\r\n\r\n")) {
+            head.append((char) in.read());
+        }
+        String headers = head.toString()
+                .toLowerCase();
+        int start = headers.indexOf("content-length:") + "content-length:".length();
+        int contentLength = Integer.parseInt(headers.substring(start, headers.indexOf("\r\n", start))
+                .trim());
+        for (int i = 0; i < contentLength; i++) {
+            in.read();
+        }
+        return head.length() + contentLength;
+    }
+}
@@ -0,0 +1,83 @@
+package com.clianz.spur;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.clianz.spur.helpers.BoonJsonCodec;
+import com.clianz.spur.helpers.JsonCodec;
+import com.clianz.spur.helpers.PooledBufferWriter;
+import com.clianz.spur.models.Pet;
+
+import io.undertow.server.DefaultByteBufferPool;
+
+/**
+ * Res.send(Object) serialization. {@code pooledWriter} is what Res does: encode straight into pooled buffers.
+ * {@code stringThenBytes} is the old String-then-byte[] path, kept as the baseline. Run with {@code -prof gc} to compare
+ * allocation per response.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseEncodingBenchmark {
+
+    @Param({ "1", "100" })
+    public int pets;
+
+    private final JsonCodec jsonCodec = new BoonJsonCodec();
+    private DefaultByteBufferPool pool;
+    private Object payload;
+
+    @Setup
+    public void setup() {
+        pool = new DefaultByteBufferPool(true, 16 * 1024);
+        List<Pet> petList = new ArrayList<>(pets);
+        for (int i = 0; i < pets; i++) {
+            petList.add(new Pet("Pet number " + i, "dog", 4, Arrays.asList("good", "fetch", "ünïcödé")));
+        }
+        payload = pets == 1 ? petList.get(0) : petList;
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public long pooledWriter() throws IOException {
+        PooledBufferWriter writer = new PooledBufferWriter(pool);
+        try {
+            jsonCodec.writeJson(payload, writer);
+            ByteBuffer[] buffers = writer.flip();
+            return writer.size() + buffers.length;
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Benchmark
+    public int stringThenBytes() {
+        return jsonCodec.toJson(payload)
+                .getBytes(StandardCharsets.UTF_8).length;
+    }
+}
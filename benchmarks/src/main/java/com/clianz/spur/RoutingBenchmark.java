@@ -0,0 +1,85 @@
+package com.clianz.spur;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.clianz.spur.helpers.CorsPolicy;
+import com.clianz.spur.helpers.Endpoint;
+import com.clianz.spur.helpers.RouteTrie;
+import com.clianz.spur.helpers.RoutingHandler;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+
+/**
+ * A GET pushed through the router SpurServer builds: path template match and path parameters in {@link RoutingHandler}, then
+ * method dispatch in the path's {@link RouteHandler}, ending in a handler that only consumes the request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoutingBenchmark {
+
+    private static final int FILLER_ROUTES = 50;
+
+    @Param({ "/pet", "/api/v1/resource37", "/users/42/orders/7", "/static/css/site.css", "/missing/path" })
+    public String path;
+
+    private HttpHandler router;
+    private HttpServerExchange exchange;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        SpurOptions options = new SpurOptions();
+        CorsPolicy corsPolicy = new CorsPolicy(Collections.emptyList(), options.corsMaxAge, options.corsAllowedHeaders,
+                options.corsAllowRequestedHeaders);
+        RouteTrie.Builder<HttpHandler> routes = RouteTrie.builder();
+        for (String template : new String[] { "/", "/pet", "/users/{id}", "/users/{id}/orders/{orderId}", "/static/*" }) {
+            routes.add(template, new RouteHandler(options, corsPolicy, methods(template, blackhole)));
+        }
+        for (int i = 0; i < FILLER_ROUTES; i++) {
+            String template = "/api/v1/resource" + i;
+            routes.add(template, new RouteHandler(options, corsPolicy, methods(template, blackhole)));
+        }
+        router = new RoutingHandler(routes.build());
+
+        exchange = new HttpServerExchange(new StubServerConnection());
+        exchange.setRequestMethod(Methods.GET)
+                .setRelativePath(path);
+    }
+
+    private static Map<HttpString, Endpoint> methods(String path, Blackhole blackhole) {
+        Map<HttpString, Endpoint> methods = new HashMap<>();
+        methods.put(Methods.GET, new Endpoint<>(Methods.GET, path, (req, res) -> blackhole.consume(req), null));
+        methods.put(Methods.POST, new Endpoint<>(Methods.POST, path, (req, res) -> blackhole.consume(req), null));
+        return methods;
+    }
+
+    @Benchmark
+    public void routeGet() throws Exception {
+        // Path parameters are added to the query parameters, which would otherwise grow on every call.
+        exchange.getQueryParameters()
+                .clear();
+        router.handleRequest(exchange);
+    }
+}
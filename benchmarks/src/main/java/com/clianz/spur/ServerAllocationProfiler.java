@@ -0,0 +1,73 @@
+package com.clianz.spur;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Reports the bytes allocated by an in-process server's XNIO threads per benchmark operation, as the server.alloc.norm
+ * secondary result. Before Java 21 {@code -prof gc} only counts the benchmark threads, so this is how a benchmark driving a
+ * server over loopback sees the server's share. Use with {@code -prof com.clianz.spur.ServerAllocationProfiler}.
+ */
+public class ServerAllocationProfiler implements InternalProfiler {
+
+    private static volatile long bytesAtIterationEnd = -1;
+
+    private long bytesBefore;
+
+    /**
+     * Records the count at the end of an iteration. Benchmarks whose trial teardown stops the server call this from a
+     * {@code @TearDown(Level.Iteration)}, as JMH only asks profilers for results after the trial teardown of the last
+     * iteration, when the server's threads and their counts are gone.
+     */
+    public static void iterationEnded() {
+        bytesAtIterationEnd = serverAllocatedBytes();
+    }
+
+    @Override
+    public String getDescription() {
+        return "Bytes allocated by the server's XNIO threads per operation";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        bytesAtIterationEnd = -1;
+        bytesBefore = serverAllocatedBytes();
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams,
+            IterationResult result) {
+        long operations = result.getMetadata()
+                .getAllOps();
+        if (operations == 0) {
+            return Collections.emptyList();
+        }
+        long bytesAfter = bytesAtIterationEnd >= 0 ? bytesAtIterationEnd : serverAllocatedBytes();
+        double bytesPerOperation = (double) (bytesAfter - bytesBefore) / operations;
+        return Collections.singletonList(new ScalarResult("server.alloc.norm", bytesPerOperation, "B/op", AggregationPolicy.AVG));
+    }
+
+    private static long serverAllocatedBytes() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long bytes = 0;
+        for (Thread thread : Thread.getAllStackTraces()
+                .keySet()) {
+            if (thread.getName()
+                    .startsWith("XNIO-")) {
+                bytes += threads.getThreadAllocatedBytes(thread.getId());
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,185 @@
+package com.clianz.spur;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+import org.xnio.ChannelListener;
+import org.xnio.Option;
+import org.xnio.OptionMap;
+import org.xnio.Pool;
+import org.xnio.StreamConnection;
+import org.xnio.XnioIoThread;
+import org.xnio.XnioWorker;
+import org.xnio.conduits.ConduitStreamSinkChannel;
+import org.xnio.conduits.ConduitStreamSourceChannel;
+import org.xnio.conduits.StreamSinkConduit;
+
+import io.undertow.connector.ByteBufferPool;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.HttpUpgradeListener;
+import io.undertow.server.SSLSessionInfo;
+import io.undertow.server.ServerConnection;
+
+/**
+ * A connection with no socket behind it, so an exchange can be pushed through Spur's handlers outside a running server. It
+ * has no IO thread, so handlers never dispatch and run inline on the benchmark thread.
+ */
+class StubServerConnection extends ServerConnection {
+
+    @Override
+    public Pool<ByteBuffer> getBufferPool() {
+        return null;
+    }
+
+    @Override
+    public ByteBufferPool getByteBufferPool() {
+        return null;
+    }
+
+    @Override
+    public XnioWorker getWorker() {
+        return null;
+    }
+
+    @Override
+    public XnioIoThread getIoThread() {
+        return null;
+    }
+
+    @Override
+    public HttpServerExchange sendOutOfBandResponse(HttpServerExchange exchange) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isContinueResponseSupported() {
+        return false;
+    }
+
+    @Override
+    public void terminateRequestChannel(HttpServerExchange exchange) {
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsOption(Option<?> option) {
+        return false;
+    }
+
+    @Override
+    public <T> T getOption(Option<T> option) {
+        return null;
+    }
+
+    @Override
+    public <T> T setOption(Option<T> option, T value) {
+        return null;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public SocketAddress getPeerAddress() {
+        return null;
+    }
+
+    @Override
+    public <A extends SocketAddress> A getPeerAddress(Class<A> type) {
+        return null;
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() {
+        return null;
+    }
+
+    @Override
+    public <A extends SocketAddress> A getLocalAddress(Class<A> type) {
+        return null;
+    }
+
+    @Override
+    public OptionMap getUndertowOptions() {
+        return OptionMap.EMPTY;
+    }
+
+    @Override
+    public int getBufferSize() {
+        return 0;
+    }
+
+    @Override
+    public SSLSessionInfo getSslSessionInfo() {
+        return null;
+    }
+
+    @Override
+    public void setSslSessionInfo(SSLSessionInfo sessionInfo) {
+    }
+
+    @Override
+    public void addCloseListener(CloseListener listener) {
+    }
+
+    @Override
+    protected StreamConnection upgradeChannel() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected ConduitStreamSinkChannel getSinkChannel() {
+        return null;
+    }
+
+    @Override
+    protected ConduitStreamSourceChannel getSourceChannel() {
+        return null;
+    }
+
+    @Override
+    protected StreamSinkConduit getSinkConduit(HttpServerExchange exchange, StreamSinkConduit conduit) {
+        return conduit;
+    }
+
+    @Override
+    protected boolean isUpgradeSupported() {
+        return false;
+    }
+
+    @Override
+    protected boolean isConnectSupported() {
+        return false;
+    }
+
+    @Override
+    protected void exchangeComplete(HttpServerExchange exchange) {
+    }
+
+    @Override
+    protected void setUpgradeListener(HttpUpgradeListener upgradeListener) {
+    }
+
+    @Override
+    protected void setConnectListener(HttpUpgradeListener connectListener) {
+    }
+
+    @Override
+    protected void maxEntitySizeUpdated(HttpServerExchange exchange) {
+    }
+
+    @Override
+    public String getTransportProtocol() {
+        return "HTTP/1.1";
+    }
+
+    @Override
+    public ChannelListener.Setter<? extends ServerConnection> getCloseSetter() {
+        throw new UnsupportedOperationException();
+    }
+}
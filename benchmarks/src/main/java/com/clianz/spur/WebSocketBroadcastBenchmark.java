@@ -0,0 +1,108 @@
+package com.clianz.spur;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+
+import io.undertow.server.DefaultByteBufferPool;
+import io.undertow.websockets.client.WebSocketClient;
+import io.undertow.websockets.core.AbstractReceiveListener;
+import io.undertow.websockets.core.BufferedTextMessage;
+import io.undertow.websockets.core.WebSocketChannel;
+
+/**
+ * broadcastWebsockets fan-out to real loopback clients. One operation is a broadcast plus waiting until every client has
+ * received the message, so the score is the end-to-end delivery time for the whole audience.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WebSocketBroadcastBenchmark {
+
+    private static final int PORT = 18181;
+    private static final String PATH = "/broadcast";
+
+    @Param({ "10", "200" })
+    public int clients;
+
+    @Param({ "64", "4096" })
+    public int messageSize;
+
+    private final Semaphore received = new Semaphore(0);
+    private final List<WebSocketChannel> channels = new ArrayList<>();
+    private SpurServer server;
+    private XnioWorker clientWorker;
+    private DefaultByteBufferPool clientPool;
+    private String message;
+
+    @Setup
+    public void setup() throws Exception {
+        server = new SpurServer().websocket(PATH, res -> {
+        }, (msg, res) -> {
+        });
+        server.start(new SpurOptions().host("localhost")
+                .port(PORT));
+
+        StringBuilder sb = new StringBuilder(messageSize);
+        while (sb.length() < messageSize) {
+            sb.append('x');
+        }
+        message = sb.toString();
+
+        clientWorker = Xnio.getInstance()
+                .createWorker(OptionMap.create(Options.WORKER_IO_THREADS, 2));
+        clientPool = new DefaultByteBufferPool(true, 16 * 1024);
+        for (int i = 0; i < clients; i++) {
+            WebSocketChannel channel = WebSocketClient.connectionBuilder(clientWorker, clientPool, new URI("ws://localhost:" + PORT + PATH))
+                    .connect()
+                    .get();
+            channel.getReceiveSetter()
+                    .set(new AbstractReceiveListener() {
+                        @Override
+                        protected void onFullTextMessage(WebSocketChannel channel, BufferedTextMessage message) {
+                            received.release();
+                        }
+                    });
+            channel.resumeReceives();
+            channels.add(channel);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        for (WebSocketChannel channel : channels) {
+            channel.sendClose();
+        }
+        clientWorker.shutdownNow();
+        clientPool.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public void broadcast() throws InterruptedException {
+        server.broadcastWebsockets(PATH, message);
+        received.acquire(clients);
+    }
+}
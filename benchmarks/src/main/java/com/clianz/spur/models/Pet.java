@@ -0,0 +1,63 @@
+package com.clianz.spur.models;
+
+import java.util.List;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+public class Pet {
+
+    @NotNull
+    @Size(min = 1, max = 64)
+    private String name;
+
+    private String type;
+
+    @Min(1)
+    private int legs;
+
+    private List<String> tags;
+
+    public Pet() {
+    }
+
+    public Pet(String name, String type, int legs, List<String> tags) {
+        this.name = name;
+        this.type = type;
+        this.legs = legs;
+        this.tags = tags;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public int getLegs() {
+        return legs;
+    }
+
+    public void setLegs(int legs) {
+        this.legs = legs;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+    }
+}
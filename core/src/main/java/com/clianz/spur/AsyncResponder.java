@@ -0,0 +1,131 @@
+package com.clianz.spur;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import com.clianz.spur.helpers.BodyDecodeException;
+import com.clianz.spur.helpers.PrecompressedBody;
+
+import org.jboss.logging.Logger;
+import org.xnio.XnioExecutor;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.RequestTooBigException;
+import io.undertow.util.SameThreadExecutor;
+import io.undertow.util.StatusCodes;
+
+/**
+ * Adapts a handler returning a CompletionStage to the regular request/response flow. The exchange stays open without holding
+ * a thread until the stage completes or the timeout fires, whichever is first; the other outcome is ignored. Either way the
+ * response is written from the exchange's IO thread, never from the thread that completed the stage.
+ */
+class AsyncResponder<T> implements BiConsumer<Req<T>, Res> {
+
+    private static final Logger LOGGER = Logger.getLogger(AsyncResponder.class.getName());
+
+    static final BiConsumer<Throwable, Res> DEFAULT_ERROR_HANDLER = (throwable, res) -> {
+        if (throwable instanceof TimeoutException) {
+            res.status(StatusCodes.GATEWAY_TIME_OUT)
+                    .send();
+            return;
+        }
+        if (throwable instanceof BodyDecodeException) {
+            res.status(StatusCodes.BAD_REQUEST)
+                    .send(throwable.getMessage());
+            return;
+        }
+        if (throwable instanceof RequestTooBigException) {
+            res.status(StatusCodes.REQUEST_ENTITY_TOO_LARGE)
+                    .send();
+            return;
+        }
+        LOGGER.error("Async handler failed: " + throwable.getMessage(), throwable);
+        res.status(StatusCodes.INTERNAL_SERVER_ERROR)
+                .send();
+    };
+
+    private final SpurServer server;
+    private final Function<Req<T>, CompletionStage<?>> handler;
+    private final long routeTimeoutMillis;
+
+    AsyncResponder(SpurServer server, Function<Req<T>, CompletionStage<?>> handler, long routeTimeoutMillis) {
+        this.server = server;
+        this.handler = handler;
+        this.routeTimeoutMillis = routeTimeoutMillis;
+    }
+
+    @Override
+    public void accept(Req<T> req, Res res) {
+        HttpServerExchange exchange = res.getRawHttpServerExchange();
+        // Dispatching to the same thread keeps the exchange open after the handler chain returns.
+        exchange.dispatch(SameThreadExecutor.INSTANCE, () -> start(req, res, exchange));
+    }
+
+    private void start(Req<T> req, Res res, HttpServerExchange exchange) {
+        AtomicBoolean completed = new AtomicBoolean();
+        CompletionStage<?> stage;
+        try {
+            stage = handler.apply(req);
+        } catch (RuntimeException e) {
+            fail(res, completed, e);
+            return;
+        }
+        if (stage == null) {
+            fail(res, completed, new IllegalStateException("Async handler for " + exchange.getRequestPath() + " returned null"));
+            return;
+        }
+
+        long timeoutMillis = routeTimeoutMillis > 0 ? routeTimeoutMillis : server.getAsyncTimeoutMillis();
+        XnioExecutor.Key timeoutKey = exchange.getIoThread()
+                .executeAfter(() -> fail(res, completed, new TimeoutException("Async handler timed out after " + timeoutMillis + "ms")),
+                        timeoutMillis, TimeUnit.MILLISECONDS);
+
+        // The stage may complete on any thread; writing from the IO thread keeps the response on the non-blocking path.
+        stage.whenComplete((result, throwable) -> {
+            timeoutKey.remove();
+            exchange.getIoThread()
+                    .execute(() -> {
+                        if (throwable != null) {
+                            fail(res, completed, throwable instanceof CompletionException && throwable.getCause() != null
+                                    ? throwable.getCause() : throwable);
+                        } else if (completed.compareAndSet(false, true)) {
+                            send(res, result);
+                        }
+                    });
+        });
+    }
+
+    private void fail(Res res, AtomicBoolean completed, Throwable throwable) {
+        if (completed.compareAndSet(false, true)) {
+            try {
+                server.getAsyncErrorHandler()
+                        .accept(throwable, res);
+            } catch (RuntimeException e) {
+                LOGGER.error("Async error handler failed: " + e.getMessage(), e);
+                res.getRawHttpServerExchange()
+                        .setStatusCode(StatusCodes.INTERNAL_SERVER_ERROR)
+                        .endExchange();
+            }
+        }
+    }
+
+    private static void send(Res res, Object result) {
+        if (result == null) {
+            res.send();
+        } else if (result instanceof String) {
+            res.send((String) result);
+        } else if (result instanceof ByteBuffer) {
+            res.send((ByteBuffer) result);
+        } else if (result instanceof PrecompressedBody) {
+            res.send((PrecompressedBody) result);
+        } else {
+            res.send(result);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.clianz.spur;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+import com.clianz.spur.helpers.BodyChunkConsumer;
+
+import org.xnio.ChannelListener;
+import org.xnio.channels.StreamSourceChannel;
+
+import io.undertow.connector.PooledByteBuffer;
+import io.undertow.server.HttpServerExchange;
+
+/**
+ * Feeds a request body to a {@link BodyChunkConsumer} through one pooled buffer, on the IO thread. Reads stop while a stage
+ * returned by the consumer is outstanding, so a slow consumer slows the client down instead of filling the heap.
+ */
+class BodyChunkReader implements ChannelListener<StreamSourceChannel> {
+
+    private final HttpServerExchange exchange;
+    private final BodyChunkConsumer consumer;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private StreamSourceChannel channel;
+    private PooledByteBuffer pooled;
+    private boolean paused;
+
+    BodyChunkReader(HttpServerExchange exchange, BodyChunkConsumer consumer) {
+        this.exchange = exchange;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Starts reading once the current handler returns.
+     *
+     * @return a stage completing after the last chunk has been consumed, or failing if reading or the consumer does.
+     */
+    CompletableFuture<Void> start() {
+        channel = exchange.getRequestChannel();
+        if (channel == null) {
+            done.completeExceptionally(new IllegalStateException("The request body has already been read"));
+            return done;
+        }
+        pooled = exchange.getConnection()
+                .getByteBufferPool()
+                .allocate();
+        exchange.addExchangeCompleteListener((completed, nextListener) -> {
+            release();
+            nextListener.proceed();
+        });
+        channel.getReadSetter()
+                .set(this);
+        channel.resumeReads();
+        return done;
+    }
+
+    @Override
+    public void handleEvent(StreamSourceChannel channel) {
+        if (paused || pooled == null) {
+            return;
+        }
+        ByteBuffer buffer = pooled.getBuffer();
+        try {
+            while (true) {
+                buffer.clear();
+                int read = channel.read(buffer);
+                if (read == 0) {
+                    return;
+                }
+                buffer.flip();
+                boolean last = read < 0;
+                CompletionStage<?> stage = consumer.onChunk(buffer, last);
+                if (last) {
+                    channel.suspendReads();
+                    release();
+                    finish(stage);
+                    return;
+                }
+                if (stage != null && !isDone(stage)) {
+                    pause(stage);
+                    return;
+                }
+            }
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+    private void pause(CompletionStage<?> stage) {
+        paused = true;
+        channel.suspendReads();
+        stage.whenComplete((result, throwable) -> exchange.getIoThread()
+                .execute(() -> {
+                    if (throwable != null) {
+                        fail(throwable);
+                        return;
+                    }
+                    paused = false;
+                    channel.resumeReads();
+                    handleEvent(channel);
+                }));
+    }
+
+    private void finish(CompletionStage<?> stage) {
+        if (stage == null) {
+            done.complete(null);
+            return;
+        }
+        stage.whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                done.completeExceptionally(unwrap(throwable));
+            } else {
+                done.complete(null);
+            }
+        });
+    }
+
+    private void fail(Throwable throwable) {
+        if (channel != null) {
+            channel.suspendReads();
+        }
+        release();
+        // The rest of the body is never read, so the connection cannot be reused.
+        exchange.setPersistent(false);
+        done.completeExceptionally(unwrap(throwable));
+    }
+
+    private void release() {
+        if (pooled != null) {
+            pooled.close();
+            pooled = null;
+        }
+    }
+
+    private static boolean isDone(CompletionStage<?> stage) {
+        return stage instanceof CompletableFuture && ((CompletableFuture<?>) stage).isDone()
+                && !((CompletableFuture<?>) stage).isCompletedExceptionally();
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+    }
+}
@@ -0,0 +1,69 @@
+package com.clianz.spur;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response cache settings for a GET route, passed with {@link RouteOptions#cache(CacheOptions)}.
+ */
+public class CacheOptions {
+
+    protected long ttlNanos = TimeUnit.SECONDS.toNanos(1);
+    protected long maxBytes = 16L * 1024L * 1024L;
+    protected String[] varyHeaders = new String[0];
+    protected boolean offHeap;
+    protected long waitNanos = TimeUnit.SECONDS.toNanos(5);
+    protected int maxWaiters = 1000;
+
+    public CacheOptions() {
+    }
+
+    /**
+     * How long a response is served from the cache. Defaults to 1 second.
+     */
+    public CacheOptions ttl(long ttl, TimeUnit unit) {
+        this.ttlNanos = unit.toNanos(ttl);
+        return this;
+    }
+
+    /**
+     * Upper bound on the memory used by this route's cached responses. Defaults to 16MB.
+     */
+    public CacheOptions maxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * Request headers the response depends on, e.g. "Accept-Language". Each combination of values is cached separately.
+     */
+    public CacheOptions vary(String... varyHeaders) {
+        this.varyHeaders = varyHeaders;
+        return this;
+    }
+
+    /**
+     * Keeps cached bodies in direct buffers outside the Java heap, which also saves a copy when writing them to the socket.
+     */
+    public CacheOptions offHeap(boolean offHeap) {
+        this.offHeap = offHeap;
+        return this;
+    }
+
+    /**
+     * How long a miss waits for another request already running the handler for the same key, before giving up and running
+     * the handler itself. Defaults to 5 seconds.
+     */
+    public CacheOptions waitTimeout(long timeout, TimeUnit unit) {
+        this.waitNanos = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * How many misses may wait on one request running the handler; further ones run the handler themselves. Defaults to
+     * 1000, 0 stops misses from waiting at all.
+     */
+    public CacheOptions maxWaiters(int maxWaiters) {
+        this.maxWaiters = maxWaiters;
+        return this;
+    }
+}
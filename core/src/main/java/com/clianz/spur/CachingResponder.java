@@ -0,0 +1,217 @@
+package com.clianz.spur;
+
+import static com.clianz.spur.helpers.HttpMethods.HEAD;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.clianz.spur.helpers.CachedResponse;
+import com.clianz.spur.helpers.ResponseCache;
+
+import org.xnio.XnioExecutor;
+
+import io.undertow.server.Connectors;
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.SameThreadExecutor;
+import io.undertow.util.StatusCodes;
+
+/**
+ * Puts a {@link ResponseCache} in front of a GET endpoint. Hits are answered on the IO thread without running the handler.
+ * Concurrent misses on the same key are collapsed: the first request runs the handler and the others wait, without holding a
+ * thread, for its response. If that response turns out not to be cacheable, the waiting requests run the handler themselves,
+ * as does a request that waited longer than the wait timeout or found the maximum number of requests already waiting.
+ */
+class CachingResponder {
+
+    static final AttachmentKey<Capture> CAPTURE = AttachmentKey.create(Capture.class);
+
+    private final ResponseCache cache;
+    private final long waitNanos;
+    private final int maxWaiters;
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    CachingResponder(ResponseCache cache, long waitNanos, int maxWaiters) {
+        this.cache = cache;
+        this.waitNanos = waitNanos;
+        this.maxWaiters = maxWaiters;
+    }
+
+    /**
+     * @return true if the exchange was answered from the cache or is waiting for another request to fill it; false if the
+     *         caller should run the handler.
+     */
+    boolean serve(HttpServerExchange exchange, HttpHandler uncached) {
+        if (!cache.isShareable(exchange)) {
+            return false;
+        }
+        String key = cache.key(exchange);
+        CachedResponse cached = cache.get(key);
+        if (cached != null) {
+            cached.send(exchange);
+            return true;
+        }
+        if (exchange.getRequestMethod()
+                .equals(HEAD)) {
+            return false;
+        }
+
+        Flight flight = new Flight(key, uncached);
+        Flight leader = flights.putIfAbsent(key, flight);
+        if (leader != null) {
+            if (!leader.reserve()) {
+                return false;
+            }
+            // Dispatching keeps the exchange open after the handler chain returns.
+            exchange.dispatch(SameThreadExecutor.INSTANCE, () -> leader.await(exchange));
+            return true;
+        }
+        exchange.putAttachment(CAPTURE, new Capture(flight, new HashSet<>(exchange.getResponseHeaders()
+                .getHeaderNames())));
+        exchange.addExchangeCompleteListener(flight);
+        return false;
+    }
+
+    /**
+     * Handed to the Res of the request filling the cache. Stores the body and sends the response from the stored entry, so
+     * the first response already carries the ETag and the gzip variant.
+     */
+    class Capture {
+        private final Flight flight;
+        private final Set<HttpString> headersBefore;
+
+        private Capture(Flight flight, Set<HttpString> headersBefore) {
+            this.flight = flight;
+            this.headersBefore = headersBefore;
+        }
+
+        /**
+         * @return true if the response was cached and sent; false if it is not cacheable and the caller must send it.
+         */
+        boolean store(HttpServerExchange exchange, byte[] body) {
+            HeaderMap responseHeaders = exchange.getResponseHeaders();
+            if (exchange.getStatusCode() != StatusCodes.OK || responseHeaders.contains(Headers.SET_COOKIE)
+                    || !ResponseCache.isStorable(responseHeaders)) {
+                flight.complete(null);
+                return false;
+            }
+            CachedResponse entry = cache.create(exchange, headersBefore, body);
+            cache.put(flight.key, entry);
+            flight.complete(entry);
+            entry.send(exchange);
+            return true;
+        }
+
+        /**
+         * Gives up on caching this response (e.g. it is streamed), letting waiting requests run the handler straight away.
+         */
+        void skip() {
+            flight.complete(null);
+        }
+    }
+
+    /**
+     * One in-progress miss and the requests waiting for it. Completes with null if the leading request ends without a
+     * cacheable response.
+     */
+    private class Flight implements ExchangeCompletionListener {
+        private final String key;
+        private final HttpHandler uncached;
+        private List<Waiter> waiters = new ArrayList<>();
+        private int reserved;
+        private CachedResponse result;
+        private boolean done;
+
+        private Flight(String key, HttpHandler uncached) {
+            this.key = key;
+            this.uncached = uncached;
+        }
+
+        /**
+         * @return false if enough requests are waiting already and this one should run the handler itself.
+         */
+        private synchronized boolean reserve() {
+            if (reserved >= maxWaiters) {
+                return false;
+            }
+            reserved++;
+            return true;
+        }
+
+        /**
+         * Parks the exchange until the flight completes or the wait times out. On the exchange's IO thread.
+         */
+        private void await(HttpServerExchange exchange) {
+            synchronized (this) {
+                if (!done) {
+                    Waiter waiter = new Waiter(exchange);
+                    waiters.add(waiter);
+                    waiter.timeoutKey = exchange.getIoThread()
+                            .executeAfter(() -> timeout(waiter), waitNanos, TimeUnit.NANOSECONDS);
+                    return;
+                }
+            }
+            resume(exchange, result);
+        }
+
+        private void timeout(Waiter waiter) {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                waiters.remove(waiter);
+                reserved--;
+            }
+            resume(waiter.exchange, null);
+        }
+
+        private void complete(CachedResponse entry) {
+            List<Waiter> waiting;
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+                result = entry;
+                waiting = waiters;
+                waiters = null;
+            }
+            flights.remove(key, this);
+            for (Waiter waiter : waiting) {
+                waiter.timeoutKey.remove();
+                waiter.exchange.getIoThread()
+                        .execute(() -> resume(waiter.exchange, entry));
+            }
+        }
+
+        private void resume(HttpServerExchange exchange, CachedResponse entry) {
+            HttpHandler handler = entry != null ? entry::send : uncached;
+            Connectors.executeRootHandler(handler, exchange);
+        }
+
+        @Override
+        public void exchangeEvent(HttpServerExchange exchange, NextListener nextListener) {
+            complete(null);
+            nextListener.proceed();
+        }
+    }
+
+    private static class Waiter {
+        private final HttpServerExchange exchange;
+        private XnioExecutor.Key timeoutKey;
+
+        private Waiter(HttpServerExchange exchange) {
+            this.exchange = exchange;
+        }
+    }
+}
@@ -1,22 +1,28 @@
 package com.clianz.spur;
 
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
-import javax.validation.Configuration;
 import javax.validation.ConstraintViolation;
-import javax.validation.Validation;
 import javax.validation.Validator;
-import javax.validation.ValidatorFactory;
 
-import org.boon.json.JsonFactory;
-import org.boon.json.ObjectMapper;
+import com.clianz.spur.helpers.AuthHandler;
+import com.clianz.spur.helpers.BeanValidators;
+import com.clianz.spur.helpers.BodyChunkConsumer;
+import com.clianz.spur.helpers.Endpoint;
+import com.clianz.spur.helpers.NdjsonDecoder;
+
 import org.jboss.logging.Logger;
 
+import io.undertow.UndertowOptions;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.util.HeaderMap;
 import io.undertow.util.StatusCodes;
@@ -24,25 +30,17 @@ import io.undertow.util.StatusCodes;
 public class Req<T> {
 
     private static final Logger LOGGER = Logger.getLogger(Req.class.getName());
-    private static final ThreadLocal<ObjectMapper> LOCAL_MAPPER = new ThreadLocal<>();
-    private static Validator validator;
-
-    static {
-        Configuration<?> config = Validation.byDefaultProvider()
-                .configure();
-        ValidatorFactory factory = config.buildValidatorFactory();
-        validator = factory.getValidator();
-        factory.close();
-    }
 
     private HttpServerExchange httpServerExchange;
     private T body;
 
     private Class<T> bodyClassType;
+    private Endpoint<T> endpoint;
 
-    protected Req(HttpServerExchange httpServerExchange, Class<T> bodyClassType) {
+    protected Req(HttpServerExchange httpServerExchange, Endpoint<T> endpoint) {
         this.httpServerExchange = httpServerExchange;
-        this.bodyClassType = bodyClassType;
+        this.endpoint = endpoint;
+        this.bodyClassType = endpoint == null ? null : endpoint.getBodyClassType();
     }
 
     public HttpServerExchange rawHttpServerExchange() {
@@ -71,6 +69,13 @@ public class Req<T> {
                 .getFirst(headerName));
     }
 
+    /**
+     * @return what the authenticator accepting this request returned, e.g. the user name for Basic auth.
+     */
+    public Optional<Object> principal() {
+        return Optional.ofNullable(httpServerExchange.getAttachment(AuthHandler.PRINCIPAL));
+    }
+
     public String method() {
         return httpServerExchange.getRequestMethod()
                 .toString();
@@ -80,31 +85,91 @@ public class Req<T> {
         return this.body;
     }
 
+    /**
+     * Streams the request body to the consumer in pooled chunks instead of buffering it, for bodies registered as Void. The
+     * handler must not block waiting for the returned stage, and should send the response once it completes.
+     * <p>
+     * Unless the route sets {@link RouteOptions#maxEntitySize(long)}, a streamed body has no size limit.
+     */
+    public CompletionStage<Void> bodyChunks(BodyChunkConsumer consumer) {
+        liftEntitySizeLimit();
+        return new BodyChunkReader(httpServerExchange, consumer).start();
+    }
+
+    /**
+     * Decodes a newline-delimited JSON body one element at a time as it arrives, validating each element like a regular body.
+     * Memory use is bounded by the longest line, which may be up to {@link SpurOptions#maxEntitySize(long)} bytes.
+     *
+     * @return a stage completing with the number of elements once the body has been read; it fails with a
+     * {@link com.clianz.spur.helpers.BodyDecodeException} on a bad line.
+     */
+    public <E> CompletionStage<Long> ndjson(Class<E> elementType, Consumer<E> consumer) {
+        return ndjsonAsync(elementType, element -> {
+            consumer.accept(element);
+            return null;
+        });
+    }
+
+    /**
+     * Like {@link #ndjson(Class, Consumer)}, but reading pauses while the stages returned for a chunk's elements are
+     * outstanding.
+     */
+    public <E> CompletionStage<Long> ndjsonAsync(Class<E> elementType, Function<E, CompletionStage<?>> consumer) {
+        int maxLineBytes = (int) Math.min(Integer.MAX_VALUE - 8, httpServerExchange.getConnection()
+                .getUndertowOptions()
+                .get(UndertowOptions.MAX_ENTITY_SIZE, UndertowOptions.DEFAULT_MAX_ENTITY_SIZE));
+        NdjsonDecoder<E> decoder = new NdjsonDecoder<>(endpoint.getJsonCodec()
+                .decoder(elementType), BeanValidators.validatorFor(elementType, endpoint.getValidationMode()),
+                maxLineBytes > 0 ? maxLineBytes : Integer.MAX_VALUE - 8);
+        return bodyChunks((chunk, last) -> decoder.decode(chunk, last, consumer)).thenApply(ignored -> decoder.getCount());
+    }
+
+    /**
+     * @deprecated routes hand the parsed request straight to their handler now; kept for subclasses for one release.
+     */
+    @Deprecated
     protected void parseBody(PostParseConsumer objectConsumer) {
+        parseBody((BodyParsed) (req, exchange) -> objectConsumer.postParse(exchange, req.body));
+    }
+
+    /**
+     * Parses the body, then hands this request to the handler. The handler is shared by every request on the route, so a
+     * bodiless request allocates nothing here.
+     */
+    void parseBody(BodyParsed bodyParsed) {
         if (bodyClassType == null || bodyClassType.equals(Void.class)) {
-            objectConsumer.postParse(httpServerExchange, null);
+            bodyParsed.bodyParsed(this, httpServerExchange);
+        } else if (bodyClassType.equals(InputStream.class)) {
+            // Routes with a streamed body always run off the IO thread, so the handler can read it with blocking calls.
+            liftEntitySizeLimit();
+            httpServerExchange.startBlocking();
+            this.body = (T) httpServerExchange.getInputStream();
+            bodyParsed.bodyParsed(this, httpServerExchange);
+        } else if (bodyClassType.equals(String.class)) {
+            httpServerExchange.getRequestReceiver()
+                    .receiveFullString((exchange, str) -> {
+                        this.body = (T) str;
+                        bodyParsed.bodyParsed(this, exchange);
+                    }, StandardCharsets.UTF_8);
         } else {
+            // Parse straight from the received UTF-8 bytes, no intermediate String.
             httpServerExchange.getRequestReceiver()
-                    .receiveFullString((exchange, str) -> convertBodyStringToObj(objectConsumer, exchange, str), StandardCharsets.UTF_8);
+                    .receiveFullBytes((exchange, bytes) -> convertBodyBytesToObj(bodyParsed, exchange, bytes));
         }
     }
 
-    private void convertBodyStringToObj(PostParseConsumer objectConsumer, HttpServerExchange exchange, String str) {
-        if (bodyClassType.equals(String.class)) {
-            this.body = (T) str;
-            objectConsumer.postParse(exchange, str);
-            return;
-        }
-
-        ObjectMapper objectMapper = LOCAL_MAPPER.get();
-        if (objectMapper == null) {
-            objectMapper = JsonFactory.createUseJSONDates();
-            LOCAL_MAPPER.set(objectMapper);
+    private void liftEntitySizeLimit() {
+        if ((endpoint == null || endpoint.getMaxEntitySize() == null) && httpServerExchange.isRequestChannelAvailable()) {
+            httpServerExchange.setMaxEntitySize(0);
         }
+    }
 
+    private void convertBodyBytesToObj(BodyParsed bodyParsed, HttpServerExchange exchange, byte[] bytes) {
+        long parseStart = System.nanoTime();
         T parsedType;
         try {
-            parsedType = objectMapper.readValue(str, bodyClassType);
+            parsedType = endpoint.getBodyDecoder()
+                    .decode(bytes);
         } catch (Exception e) {
             exchange.setStatusCode(StatusCodes.BAD_REQUEST);
             exchange.endExchange();
@@ -117,21 +182,38 @@ public class Req<T> {
             return;
         }
 
+        Validator validator = endpoint.getValidator();
+        if (validator == null) {
+            recordParseTime(parseStart);
+            this.body = parsedType;
+            bodyParsed.bodyParsed(this, exchange);
+            return;
+        }
+
         Set<ConstraintViolation<T>> constraintViolations = validator.validate(parsedType);
+        recordParseTime(parseStart);
         if (constraintViolations.isEmpty()) {
             this.body = parsedType;
-            objectConsumer.postParse(exchange, parsedType);
+            bodyParsed.bodyParsed(this, exchange);
         } else {
             exchange.setStatusCode(StatusCodes.BAD_REQUEST);
             exchange.getResponseSender()
-                    .send(objectMapper.toJson(new InvalidValues(constraintViolations.stream()
-                            .map(violation -> violation.getPropertyPath()
-                                    .toString())
-                            .collect(Collectors.toList()))));
+                    .send(endpoint.getJsonCodec()
+                            .toJson(new InvalidValues(constraintViolations.stream()
+                                    .map(violation -> violation.getPropertyPath()
+                                            .toString())
+                                    .collect(Collectors.toList()))));
             exchange.endExchange();
         }
     }
 
+    private void recordParseTime(long parseStart) {
+        if (endpoint.getMetrics() != null) {
+            endpoint.getMetrics()
+                    .bodyParsed(System.nanoTime() - parseStart);
+        }
+    }
+
     private class InvalidValues {
         private List<String> invalidValues;
 
@@ -144,9 +226,18 @@ public class Req<T> {
         }
     }
 
+    /**
+     * @deprecated only used by {@link #parseBody(PostParseConsumer)}; will be removed with it in the next release.
+     */
+    @Deprecated
     @FunctionalInterface
     public interface PostParseConsumer<T> {
         void postParse(HttpServerExchange exchange, T body);
     }
 
+    @FunctionalInterface
+    interface BodyParsed {
+        void bodyParsed(Req req, HttpServerExchange exchange);
+    }
+
 }
@@ -3,28 +3,62 @@ package com.clianz.spur;
 import static com.clianz.spur.helpers.HttpMethods.HEAD;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.stream.Stream;
+
+import com.clianz.spur.helpers.ConditionalRequests;
+import com.clianz.spur.helpers.ETags;
+import com.clianz.spur.helpers.HeaderNames;
+import com.clianz.spur.helpers.JsonCodec;
+import com.clianz.spur.helpers.PooledBufferWriter;
+import com.clianz.spur.helpers.PrecompressedBody;
 
-import org.boon.json.JsonFactory;
-import org.boon.json.ObjectMapper;
 import org.jboss.logging.Logger;
+import org.xnio.IoUtils;
+import org.xnio.channels.Channels;
 import org.xnio.channels.StreamSinkChannel;
 
+import io.undertow.io.IoCallback;
+import io.undertow.io.Sender;
 import io.undertow.server.HttpServerExchange;
+import io.undertow.util.DateUtils;
+import io.undertow.util.HeaderMap;
 import io.undertow.util.Headers;
 import io.undertow.util.HttpString;
+import io.undertow.util.StatusCodes;
 
 public class Res {
 
     private static final Logger LOGGER = Logger.getLogger(Res.class.getName());
     private static final String JSON_CONTENT_TYPE = "application/json";
-    private static final ThreadLocal<ObjectMapper> LOCAL_MAPPER = new ThreadLocal<>();
+    private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
     private HttpServerExchange httpServerExchange;
+    private JsonCodec jsonCodec;
+    private CachingResponder.Capture capture;
+    private boolean autoEtag;
 
-    protected Res(HttpServerExchange httpServerExchange) {
+    protected Res(HttpServerExchange httpServerExchange, JsonCodec jsonCodec) {
         this.httpServerExchange = httpServerExchange;
+        this.jsonCodec = jsonCodec;
+    }
+
+    /**
+     * Stores the body sent by this response in the route's cache.
+     */
+    void capture(CachingResponder.Capture capture) {
+        this.capture = capture;
+    }
+
+    /**
+     * Tags successful responses with a strong ETag hashed from the serialized body, unless the handler set one.
+     */
+    void autoEtag(boolean autoEtag) {
+        this.autoEtag = autoEtag;
     }
 
     public HttpServerExchange getRawHttpServerExchange() {
@@ -33,24 +67,69 @@ public class Res {
 
     public Res header(String header, String value) {
         httpServerExchange.getResponseHeaders()
-                .put(new HttpString(header), value);
+                .put(HeaderNames.of(header), value);
+        return this;
+    }
+
+    public Res header(HttpString header, String value) {
+        httpServerExchange.getResponseHeaders()
+                .put(header, value);
         return this;
     }
 
     public Res headers(Map<String, String> headers) {
-        headers.forEach((header, value) -> httpServerExchange.getResponseHeaders()
-                .put(new HttpString(header), value));
+        HeaderMap responseHeaders = httpServerExchange.getResponseHeaders();
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            responseHeaders.put(HeaderNames.of(header.getKey()), header.getValue());
+        }
         return this;
     }
 
+    /**
+     * Sets a strong ETag, quoting it if needed. GET and HEAD requests whose If-None-Match matches get a 304 instead of the body.
+     */
+    public Res etag(String etag) {
+        httpServerExchange.getResponseHeaders()
+                .put(Headers.ETAG, ETags.quote(etag, false));
+        return this;
+    }
+
+    /**
+     * Sets a weak ETag, for responses that are equivalent but not byte-for-byte identical (e.g. a version number).
+     */
+    public Res weakEtag(String etag) {
+        httpServerExchange.getResponseHeaders()
+                .put(Headers.ETAG, ETags.quote(etag, true));
+        return this;
+    }
+
+    /**
+     * Sets Last-Modified. GET and HEAD requests whose If-Modified-Since is not older get a 304 instead of the body.
+     */
+    public Res lastModified(Date lastModified) {
+        httpServerExchange.getResponseHeaders()
+                .put(Headers.LAST_MODIFIED, DateUtils.toDateString(lastModified));
+        return this;
+    }
+
+    public Res lastModified(long epochMillis) {
+        return lastModified(new Date(epochMillis));
+    }
+
     public Res status(int statusCode) {
         httpServerExchange.setStatusCode(statusCode);
         return this;
     }
 
     public void send(String body) {
-        if (httpServerExchange.getRequestMethod()
-                .equals(HEAD)) {
+        if (capture != null || autoEtag) {
+            send(ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8)));
+            return;
+        }
+        if (notModified()) {
+            return;
+        }
+        if (isHead()) {
             httpServerExchange.endExchange();
             return;
         }
@@ -60,13 +139,34 @@ public class Res {
     }
 
     public void send() {
+        if (capture != null && captured(new byte[0])) {
+            return;
+        }
+        if (notModified()) {
+            return;
+        }
         httpServerExchange.endExchange();
     }
 
     public void send(ByteBuffer byteBuffer) {
-        if (httpServerExchange.getRequestMethod()
-                .equals(HEAD)) {
-            httpServerExchange.endExchange();
+        if (isHead()) {
+            if (!notModified()) {
+                httpServerExchange.endExchange();
+            }
+            return;
+        }
+        if (capture != null) {
+            byte[] bytes = new byte[byteBuffer.remaining()];
+            byteBuffer.duplicate()
+                    .get(bytes);
+            if (captured(bytes)) {
+                return;
+            }
+        }
+        if (autoEtag) {
+            setAutoEtag(byteBuffer);
+        }
+        if (notModified()) {
             return;
         }
         httpServerExchange.getResponseSender()
@@ -74,33 +174,229 @@ public class Res {
         httpServerExchange.endExchange();
     }
 
+    /**
+     * Sends a body compressed ahead of time, choosing the variant by Accept-Encoding. The response varies on Accept-Encoding
+     * and is not cached by the route cache, since it is already cheap to send.
+     */
+    public void send(PrecompressedBody body) {
+        if (capture != null) {
+            capture.skip();
+            capture = null;
+        }
+        String contentCoding = body.negotiate(httpServerExchange.getRequestHeaders()
+                .getFirst(Headers.ACCEPT_ENCODING));
+        HeaderMap responseHeaders = httpServerExchange.getResponseHeaders();
+        if (body.getContentType() != null) {
+            responseHeaders.put(Headers.CONTENT_TYPE, body.getContentType());
+        }
+        responseHeaders.add(Headers.VARY, Headers.ACCEPT_ENCODING_STRING);
+        if (contentCoding != null) {
+            responseHeaders.put(Headers.CONTENT_ENCODING, contentCoding);
+        }
+        send(body.get(contentCoding));
+    }
+
+    /**
+     * Sends the object as JSON. From a blocking handler, a body bigger than one pooled buffer goes out chunked while it is
+     * serialized, unless it is being cached or auto-tagged; on the IO thread the body is buffered and sent with a Content-Length.
+     */
     public void send(Object obj) {
-        if (httpServerExchange.getRequestMethod()
-                .equals(HEAD)) {
-            httpServerExchange.endExchange();
+        if (isHead()) {
+            if (!notModified()) {
+                httpServerExchange.endExchange();
+            }
             return;
         }
         httpServerExchange.getResponseHeaders()
                 .put(Headers.CONTENT_TYPE, JSON_CONTENT_TYPE);
 
-        ObjectMapper objectMapper = LOCAL_MAPPER.get();
-        if (objectMapper == null) {
-            LOGGER.info("Creating new parser.........");
-            objectMapper = JsonFactory.createUseJSONDates();
-            LOCAL_MAPPER.set(objectMapper);
+        PooledBufferWriter writer = new PooledBufferWriter(httpServerExchange.getConnection()
+                .getByteBufferPool());
+        ChunkedWriter chunked = null;
+        if (capture == null && !autoEtag && !httpServerExchange.isInIoThread()) {
+            // Validators are all set by the handler here, so they can be checked before the body is written.
+            if (notModified()) {
+                return;
+            }
+            chunked = new ChunkedWriter();
+            writer.spillOver(1, chunked);
         }
-
-        String jsonStr = objectMapper
-                .toJson(obj);
-        ByteBuffer byteBuffer = ByteBuffer.wrap(jsonStr.getBytes(StandardCharsets.UTF_8));
-        StreamSinkChannel responseChannel = httpServerExchange.getResponseChannel();
-        int written;
         try {
-            do {
-                written = responseChannel.write(byteBuffer);
-            } while (byteBuffer.hasRemaining() && written > 0);
-        } catch (IOException e) {
-            LOGGER.error("Can not write response: " + e.getMessage(), e);
+            jsonCodec.writeJson(obj, writer);
+        } catch (Exception e) {
+            writer.close();
+            if (writer.hasSpilled()) {
+                chunked.fail(e);
+                return;
+            }
+            LOGGER.error("Can not serialize response: " + e.getMessage(), e);
+            httpServerExchange.setStatusCode(StatusCodes.INTERNAL_SERVER_ERROR);
+            httpServerExchange.endExchange();
+            return;
+        }
+        if (writer.hasSpilled()) {
+            chunked.finish(writer);
+            return;
+        }
+
+        if (capture != null) {
+            byte[] bytes = writer.toByteArray();
+            writer.close();
+            if (!captured(bytes)) {
+                send(ByteBuffer.wrap(bytes));
+            }
+            return;
         }
+
+        ByteBuffer[] buffers = writer.flip();
+        if (autoEtag) {
+            setAutoEtag(buffers);
+        }
+        if (notModified()) {
+            writer.close();
+            return;
+        }
+        httpServerExchange.getResponseHeaders()
+                .put(Headers.CONTENT_LENGTH, writer.size());
+        // The sender registers write listeners for slow clients and only calls back once every byte is out.
+        httpServerExchange.getResponseSender()
+                .send(buffers, new IoCallback() {
+                    @Override
+                    public void onComplete(HttpServerExchange exchange, Sender sender) {
+                        writer.close();
+                        exchange.endExchange();
+                    }
+
+                    @Override
+                    public void onException(HttpServerExchange exchange, Sender sender, IOException exception) {
+                        writer.close();
+                        LOGGER.error("Can not write response: " + exception.getMessage(), exception);
+                        IoCallback.END_EXCHANGE.onException(exchange, sender, exception);
+                    }
+                });
+    }
+
+    /**
+     * Sends the elements as a JSON array, serializing them a buffer at a time as the client reads, so memory use does not grow
+     * with the number of elements. The response is chunked and is never cached or auto-tagged.
+     * <p>
+     * On the IO thread the iterator must not block; from a blocking handler it may (e.g. walking a database cursor).
+     */
+    public void stream(Iterator<?> elements) {
+        stream(elements, null, false);
+    }
+
+    /**
+     * Like {@link #stream(Iterator)}; the stream is closed once the response has been sent or has failed.
+     */
+    public void stream(Stream<?> elements) {
+        stream(elements.iterator(), elements, false);
+    }
+
+    /**
+     * Sends the elements as newline-delimited JSON, one element per line, in the same incremental way as
+     * {@link #stream(Iterator)}.
+     */
+    public void ndjson(Iterator<?> elements) {
+        stream(elements, null, true);
+    }
+
+    public void ndjson(Stream<?> elements) {
+        stream(elements.iterator(), elements, true);
+    }
+
+    private void stream(Iterator<?> elements, AutoCloseable source, boolean ndjson) {
+        if (capture != null) {
+            capture.skip();
+            capture = null;
+        }
+        httpServerExchange.getResponseHeaders()
+                .put(Headers.CONTENT_TYPE, ndjson ? NDJSON_CONTENT_TYPE : JSON_CONTENT_TYPE);
+        if (notModified() || isHead()) {
+            if (!httpServerExchange.isComplete()) {
+                httpServerExchange.endExchange();
+            }
+            if (source != null) {
+                try {
+                    source.close();
+                } catch (Exception e) {
+                    LOGGER.warn("Can not close streamed source: " + e.getMessage(), e);
+                }
+            }
+            return;
+        }
+        new ResponseStreamer(httpServerExchange, jsonCodec, elements, source, ndjson).start();
+    }
+
+    /**
+     * Sends a body bigger than one buffer chunked as it is serialized, blocking the calling thread (never the IO thread) until
+     * the socket takes each buffer, so only one pooled buffer is held however large the object. Smaller bodies never get here
+     * and keep their Content-Length.
+     */
+    private class ChunkedWriter implements PooledBufferWriter.Spill {
+        private StreamSinkChannel channel;
+
+        @Override
+        public void spill(ByteBuffer[] filled) throws IOException {
+            if (channel == null) {
+                channel = httpServerExchange.getResponseChannel();
+            }
+            Channels.writeBlocking(channel, filled, 0, filled.length);
+        }
+
+        private void finish(PooledBufferWriter writer) {
+            try {
+                spill(writer.flip());
+                httpServerExchange.endExchange();
+            } catch (IOException e) {
+                fail(e);
+            } finally {
+                writer.close();
+            }
+        }
+
+        private void fail(Exception e) {
+            // The status line has gone out, so the client can only tell from the truncated chunked body.
+            Throwable cause = e instanceof UncheckedIOException ? e.getCause() : e;
+            if (cause instanceof IOException) {
+                LOGGER.debug("Response aborted: " + cause.getMessage(), cause);
+            } else {
+                LOGGER.error("Can not serialize response: " + e.getMessage(), e);
+            }
+            IoUtils.safeClose(httpServerExchange.getConnection());
+        }
+    }
+
+    private boolean isHead() {
+        return httpServerExchange.getRequestMethod()
+                .equals(HEAD);
+    }
+
+    private void setAutoEtag(ByteBuffer... body) {
+        if (httpServerExchange.getStatusCode() == StatusCodes.OK && !httpServerExchange.getResponseHeaders()
+                .contains(Headers.ETAG)) {
+            httpServerExchange.getResponseHeaders()
+                    .put(Headers.ETAG, ETags.strong(body));
+        }
+    }
+
+    /**
+     * Answers with a 304 instead of the body when the request's If-None-Match or If-Modified-Since matches this response.
+     */
+    private boolean notModified() {
+        if (ConditionalRequests.isNotModified(httpServerExchange)) {
+            ConditionalRequests.sendNotModified(httpServerExchange);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Hands the body to the route cache, which sends it unless the response is not cacheable. Only the first send is captured.
+     */
+    private boolean captured(byte[] body) {
+        CachingResponder.Capture pending = capture;
+        capture = null;
+        return pending.store(httpServerExchange, body);
     }
 }
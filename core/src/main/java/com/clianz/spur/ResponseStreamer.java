@@ -0,0 +1,177 @@
+package com.clianz.spur;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+import com.clianz.spur.helpers.JsonCodec;
+import com.clianz.spur.helpers.PooledBufferWriter;
+
+import org.jboss.logging.Logger;
+import org.xnio.Buffers;
+import org.xnio.ChannelListener;
+import org.xnio.IoUtils;
+import org.xnio.channels.Channels;
+import org.xnio.channels.StreamSinkChannel;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.StatusCodes;
+
+/**
+ * Serializes elements into pooled buffers about one buffer at a time and writes each batch before serializing the next, so a
+ * large result is never held in memory. Without a Content-Length the response goes out chunked.
+ * <p>
+ * On the IO thread, the next batch is only serialized once the socket has taken the previous one, via a write listener. On
+ * any other thread, the calling thread waits for the socket instead, which suits iterators that block (e.g. a database cursor).
+ */
+class ResponseStreamer implements ChannelListener<StreamSinkChannel> {
+
+    private static final Logger LOGGER = Logger.getLogger(ResponseStreamer.class.getName());
+
+    private final HttpServerExchange exchange;
+    private final JsonCodec jsonCodec;
+    private final Iterator<?> elements;
+    private final boolean ndjson;
+    private final int batchBytes;
+    private AutoCloseable source;
+    private StreamSinkChannel channel;
+    private PooledBufferWriter writer;
+    private ByteBuffer[] buffers;
+    private boolean opened;
+    private boolean exhausted;
+
+    /**
+     * @param source closed once streaming ends, or null.
+     * @param ndjson true for one element per line, false for a JSON array.
+     */
+    ResponseStreamer(HttpServerExchange exchange, JsonCodec jsonCodec, Iterator<?> elements, AutoCloseable source, boolean ndjson) {
+        this.exchange = exchange;
+        this.jsonCodec = jsonCodec;
+        this.elements = elements;
+        this.source = source;
+        this.ndjson = ndjson;
+        this.batchBytes = exchange.getConnection()
+                .getBufferSize();
+    }
+
+    void start() {
+        try {
+            // Serialize the first batch before the headers are committed, so a failure can still become a 500.
+            fill();
+        } catch (Exception e) {
+            release();
+            LOGGER.error("Can not serialize streamed response: " + e.getMessage(), e);
+            exchange.setStatusCode(StatusCodes.INTERNAL_SERVER_ERROR);
+            exchange.endExchange();
+            return;
+        }
+        channel = exchange.getResponseChannel();
+        if (exchange.isInIoThread()) {
+            channel.getWriteSetter()
+                    .set(this);
+            handleEvent(channel);
+        } else {
+            writeBlocking();
+        }
+    }
+
+    @Override
+    public void handleEvent(StreamSinkChannel channel) {
+        try {
+            while (true) {
+                channel.write(buffers);
+                if (Buffers.hasRemaining(buffers)) {
+                    channel.resumeWrites();
+                    return;
+                }
+                if (!next()) {
+                    channel.suspendWrites();
+                    exchange.endExchange();
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    private void writeBlocking() {
+        try {
+            do {
+                Channels.writeBlocking(channel, buffers, 0, buffers.length);
+            } while (next());
+            exchange.endExchange();
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Hands back the written batch and serializes the next one.
+     *
+     * @return false once everything has been written.
+     */
+    private boolean next() throws IOException {
+        writer.close();
+        writer = null;
+        if (exhausted) {
+            release();
+            return false;
+        }
+        fill();
+        return true;
+    }
+
+    private void fill() throws IOException {
+        writer = new PooledBufferWriter(exchange.getConnection()
+                .getByteBufferPool());
+        if (!ndjson && !opened) {
+            writer.write('[');
+        }
+        while (writer.size() < batchBytes && elements.hasNext()) {
+            if (!ndjson && opened) {
+                writer.write(',');
+            }
+            opened = true;
+            jsonCodec.writeJson(elements.next(), writer);
+            if (ndjson) {
+                writer.write('\n');
+            }
+        }
+        opened = true;
+        if (!elements.hasNext()) {
+            exhausted = true;
+            if (!ndjson) {
+                writer.write(']');
+            }
+        }
+        buffers = writer.flip();
+    }
+
+    private void fail(Exception e) {
+        // The status line has gone out, so the client can only tell from the truncated chunked body.
+        if (e instanceof IOException) {
+            LOGGER.debug("Streamed response aborted: " + e.getMessage(), e);
+        } else {
+            LOGGER.error("Can not serialize streamed response: " + e.getMessage(), e);
+        }
+        release();
+        IoUtils.safeClose(exchange.getConnection());
+    }
+
+    private void release() {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+        buffers = null;
+        if (source != null) {
+            try {
+                source.close();
+            } catch (Exception e) {
+                LOGGER.warn("Can not close streamed source: " + e.getMessage(), e);
+            }
+            source = null;
+        }
+    }
+}
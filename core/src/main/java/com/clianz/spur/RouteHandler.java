@@ -0,0 +1,244 @@
+package com.clianz.spur;
+
+import static com.clianz.spur.helpers.HttpMethods.GET;
+import static com.clianz.spur.helpers.HttpMethods.HEAD;
+import static com.clianz.spur.helpers.HttpMethods.OPTIONS;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.clianz.spur.helpers.BoundedExecutor;
+import com.clianz.spur.helpers.Compression;
+import com.clianz.spur.helpers.ConditionalRequests;
+import com.clianz.spur.helpers.CorsPolicy;
+import com.clianz.spur.helpers.ETags;
+import com.clianz.spur.helpers.Endpoint;
+import com.clianz.spur.helpers.JsonCodec;
+import com.clianz.spur.helpers.RequestMetrics;
+
+import io.undertow.server.Connectors;
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.SameThreadExecutor;
+import io.undertow.util.StatusCodes;
+
+/**
+ * Handles every method registered on one path. Built once at start, so method dispatch, the Allow header and CORS preflight
+ * responses cost nothing per request.
+ */
+class RouteHandler implements HttpHandler {
+
+    private final SpurOptions options;
+    private final CorsPolicy corsPolicy;
+    private final JsonCodec jsonCodec;
+    private final HttpString[] methods;
+    private final EndpointInvoker[] invokers;
+    private final String allowedMethods;
+    private final String retryAfter;
+
+    RouteHandler(SpurOptions options, CorsPolicy corsPolicy, Map<HttpString, Endpoint> methodEndpointMap) {
+        this.options = options;
+        this.corsPolicy = corsPolicy;
+        this.jsonCodec = options.jsonCodec;
+        this.methods = methodEndpointMap.keySet()
+                .toArray(new HttpString[0]);
+        this.invokers = new EndpointInvoker[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            invokers[i] = new EndpointInvoker(methodEndpointMap.get(methods[i]));
+        }
+        this.allowedMethods = getAllowedMethods(methodEndpointMap.keySet(), corsPolicy);
+        this.retryAfter = String.valueOf(options.rejectedRetryAfterSeconds);
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        HttpString requestMethod = exchange.getRequestMethod();
+        if (requestMethod.equals(HEAD)) {
+            requestMethod = GET;
+        } else if (requestMethod.equals(OPTIONS) && isPreflight(exchange)) {
+            exchange.getResponseHeaders()
+                    .put(CorsPolicy.ACCESS_CONTROL_ALLOW_METHODS, allowedMethods);
+            corsPolicy.addPreflightHeaders(exchange);
+            exchange.endExchange();
+            return;
+        }
+
+        EndpointInvoker invoker = getInvoker(requestMethod);
+        if (invoker == null) {
+            exchange.setStatusCode(StatusCodes.METHOD_NOT_ALLOWED);
+            exchange.getResponseHeaders()
+                    .put(Headers.ALLOW, allowedMethods);
+            exchange.endExchange();
+            return;
+        }
+
+        if (invoker.compress != null) {
+            exchange.putAttachment(Compression.ROUTE_POLICY, invoker.compress);
+        }
+        if (invoker.metrics != null) {
+            invoker.metrics.requestStarted();
+            exchange.addExchangeCompleteListener(invoker);
+        }
+
+        if (invoker.cachingResponder != null && invoker.cachingResponder.serve(exchange, invoker.uncached)) {
+            return;
+        }
+        run(exchange, invoker);
+    }
+
+    private void run(HttpServerExchange exchange, EndpointInvoker invoker) throws Exception {
+        if (exchange.isInIoThread() && dispatch(exchange, invoker)) {
+            return;
+        }
+        invoker.handleRequest(exchange);
+    }
+
+    /**
+     * Moves the exchange off the IO thread when the endpoint's execution mode asks for it.
+     *
+     * @return true if the exchange was dispatched or rejected.
+     */
+    private boolean dispatch(HttpServerExchange exchange, EndpointInvoker invoker) {
+        switch (invoker.endpoint.getExecutionMode()) {
+            case WORKER:
+                exchange.dispatch(invoker);
+                return true;
+            case VIRTUAL_THREAD:
+            case BULKHEAD:
+                BoundedExecutor executor = invoker.endpoint.getExecutor();
+                exchange.dispatch(SameThreadExecutor.INSTANCE, () -> {
+                    Runnable task = () -> Connectors.executeRootHandler(invoker, exchange);
+                    // A queued exchange dropped by the executor's shutdown gets the same answer as one rejected here.
+                    Runnable onDropped = () -> exchange.getIoThread()
+                            .execute(() -> Connectors.executeRootHandler(this::reject, exchange));
+                    if (!executor.tryExecute(task, onDropped)) {
+                        reject(exchange);
+                    }
+                });
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void reject(HttpServerExchange exchange) {
+        exchange.setStatusCode(StatusCodes.SERVICE_UNAVAILABLE);
+        exchange.getResponseHeaders()
+                .put(Headers.RETRY_AFTER, retryAfter);
+        exchange.endExchange();
+    }
+
+    private boolean isPreflight(HttpServerExchange exchange) {
+        String requestAccessControlRequestMethod = exchange.getRequestHeaders()
+                .getFirst(CorsPolicy.ACCESS_CONTROL_REQUEST_METHOD);
+        if (requestAccessControlRequestMethod == null) {
+            return false;
+        }
+        for (HttpString method : methods) {
+            if (method.equalToString(requestAccessControlRequestMethod)) {
+                return corsPolicy.isAllowed(exchange.getRequestHeaders()
+                        .getFirst(Headers.ORIGIN));
+            }
+        }
+        return false;
+    }
+
+    private EndpointInvoker getInvoker(HttpString requestMethod) {
+        for (int i = 0; i < methods.length; i++) {
+            if (methods[i].equals(requestMethod)) {
+                return invokers[i];
+            }
+        }
+        return null;
+    }
+
+    private static String getAllowedMethods(Set<HttpString> methodsRegistered, CorsPolicy corsPolicy) {
+        Set<HttpString> methodsDefined = new TreeSet<>(methodsRegistered);
+        if (methodsDefined.contains(GET)) {
+            methodsDefined.add(HEAD);
+        }
+        if (corsPolicy.isEnabled()) {
+            methodsDefined.add(OPTIONS);
+        }
+        return methodsDefined.stream()
+                .map(HttpString::toString)
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Parses the body and runs the handler of one endpoint, on whichever thread the exchange was dispatched to.
+     */
+    private class EndpointInvoker implements HttpHandler, ExchangeCompletionListener, Req.BodyParsed {
+        private final Endpoint endpoint;
+        private final RequestMetrics metrics;
+        private final CachingResponder cachingResponder;
+        private final boolean autoEtag;
+        private final Function<Req, String> versionToken;
+        private final Long maxEntitySize;
+        private final Boolean compress;
+        private final HttpHandler uncached = exchange -> run(exchange, this);
+
+        private EndpointInvoker(Endpoint endpoint) {
+            this.endpoint = endpoint;
+            this.metrics = endpoint.getMetrics();
+            this.cachingResponder = endpoint.getResponseCache() == null ? null
+                    : new CachingResponder(endpoint.getResponseCache(), endpoint.getCacheWaitNanos(), endpoint.getCacheMaxWaiters());
+            this.autoEtag = Boolean.TRUE.equals(endpoint.getAutoEtag());
+            this.versionToken = endpoint.getVersionToken();
+            this.maxEntitySize = endpoint.getMaxEntitySize();
+            this.compress = endpoint.getCompress();
+        }
+
+        @Override
+        public void handleRequest(HttpServerExchange exchange) throws Exception {
+            Req req = new Req(exchange, endpoint);
+            if (versionToken != null && isCurrentVersion(req, exchange)) {
+                return;
+            }
+            if (maxEntitySize != null && exchange.isRequestChannelAvailable()) {
+                exchange.setMaxEntitySize(maxEntitySize);
+            }
+            req.parseBody(this);
+        }
+
+        @Override
+        public void bodyParsed(Req req, HttpServerExchange exchange) {
+            Res res = new Res(exchange, jsonCodec);
+            res.autoEtag(autoEtag);
+            if (cachingResponder != null) {
+                res.capture(exchange.getAttachment(CachingResponder.CAPTURE));
+            }
+            endpoint.getReqResBiConsumer()
+                    .accept(req, res);
+        }
+
+        /**
+         * Sends the route's version as a weak ETag, answering with a 304 if the client already has it.
+         */
+        private boolean isCurrentVersion(Req req, HttpServerExchange exchange) {
+            String version = versionToken.apply(req);
+            if (version == null) {
+                return false;
+            }
+            exchange.getResponseHeaders()
+                    .put(Headers.ETAG, ETags.quote(version, true));
+            if (ConditionalRequests.isNotModified(exchange)) {
+                ConditionalRequests.sendNotModified(exchange);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void exchangeEvent(HttpServerExchange exchange, NextListener nextListener) {
+            metrics.requestCompleted(exchange.getStatusCode(), System.nanoTime() - exchange.getRequestStartTime());
+            nextListener.proceed();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.clianz.spur;
+
+import java.util.function.Function;
+
+import com.clianz.spur.helpers.ExecutionMode;
+import com.clianz.spur.helpers.ValidationMode;
+
+/**
+ * Per-route settings, passed when registering an endpoint.
+ */
+public class RouteOptions {
+
+    protected ValidationMode validationMode = ValidationMode.ENABLED;
+    protected ExecutionMode executionMode;
+    protected String bulkhead;
+    protected long asyncTimeoutMillis;
+    protected CacheOptions cacheOptions;
+    protected Boolean autoEtag;
+    protected Function<Req, String> versionToken;
+    protected Long maxEntitySize;
+    protected Boolean compress;
+
+    public RouteOptions() {
+    }
+
+    public RouteOptions validation(ValidationMode validationMode) {
+        this.validationMode = validationMode;
+        return this;
+    }
+
+    /**
+     * Overrides {@link SpurOptions#executionMode(ExecutionMode)} for this route.
+     */
+    public RouteOptions executionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+        return this;
+    }
+
+    /**
+     * Overrides {@link SpurOptions#asyncTimeout(long)} for this route's async handler.
+     */
+    public RouteOptions asyncTimeout(long asyncTimeoutMillis) {
+        this.asyncTimeoutMillis = asyncTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * Runs this route on the named executor declared with {@link SpurOptions#bulkhead(String, int, int)}, so a slow route can
+     * only exhaust its own threads and queue.
+     */
+    public RouteOptions bulkhead(String name) {
+        this.executionMode = ExecutionMode.BULKHEAD;
+        this.bulkhead = name;
+        return this;
+    }
+
+    /**
+     * Caches this GET route's responses, so repeated requests skip the handler and serialization. Only 200 responses without
+     * cookies are cached.
+     */
+    public RouteOptions cache(CacheOptions cacheOptions) {
+        this.cacheOptions = cacheOptions;
+        return this;
+    }
+
+    /**
+     * Overrides {@link SpurOptions#autoEtag(boolean)} for this route.
+     */
+    public RouteOptions autoEtag(boolean autoEtag) {
+        this.autoEtag = autoEtag;
+        return this;
+    }
+
+    /**
+     * Supplies a cheap version of the resource (e.g. a row version or update counter) before the handler runs. It is sent as a
+     * weak ETag, and a request whose If-None-Match already has it gets a 304 without the handler or the body ever running.
+     * Returning null skips the check.
+     */
+    public RouteOptions version(Function<Req, String> versionToken) {
+        this.versionToken = versionToken;
+        return this;
+    }
+
+    /**
+     * Overrides {@link SpurOptions#maxEntitySize(long)} for this route's request body; 0 means no limit. Streamed bodies
+     * (InputStream, {@link Req#bodyChunks} and {@link Req#ndjson}) have no limit unless one is set here.
+     */
+    public RouteOptions maxEntitySize(long maxEntitySize) {
+        this.maxEntitySize = maxEntitySize;
+        return this;
+    }
+
+    /**
+     * Overrides {@link SpurOptions#enableCompression(boolean)} for this route, e.g. to skip payloads that are already compressed
+     * or to compress one chatty route only.
+     */
+    public RouteOptions compress(boolean compress) {
+        this.compress = compress;
+        return this;
+    }
+}
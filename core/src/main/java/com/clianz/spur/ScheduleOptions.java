@@ -0,0 +1,57 @@
+package com.clianz.spur;
+
+import java.util.concurrent.TimeUnit;
+
+import com.clianz.spur.helpers.ScheduleMode;
+
+/**
+ * Per-job settings, passed when scheduling a periodic task.
+ */
+public class ScheduleOptions {
+
+    protected String name;
+    protected ScheduleMode mode = ScheduleMode.FIXED_RATE;
+    protected long initialDelayNanos;
+    protected long jitterNanos;
+    protected boolean allowOverlap;
+
+    public ScheduleOptions() {
+    }
+
+    /**
+     * Names the job in logs and metrics. Defaults to "job-N".
+     */
+    public ScheduleOptions name(String name) {
+        this.name = name;
+        return this;
+    }
+
+    public ScheduleOptions mode(ScheduleMode mode) {
+        this.mode = mode;
+        return this;
+    }
+
+    /**
+     * Delays the first run. By default the job runs as soon as it is scheduled.
+     */
+    public ScheduleOptions initialDelay(long initialDelay, TimeUnit unit) {
+        this.initialDelayNanos = unit.toNanos(initialDelay);
+        return this;
+    }
+
+    /**
+     * Delays each run by a random amount up to the given maximum, so jobs on many instances do not fire in lockstep.
+     */
+    public ScheduleOptions jitter(long maxJitter, TimeUnit unit) {
+        this.jitterNanos = unit.toNanos(maxJitter);
+        return this;
+    }
+
+    /**
+     * Lets a fixed-rate run start while the previous one is still going. By default such runs are skipped and counted.
+     */
+    public ScheduleOptions allowOverlap(boolean allowOverlap) {
+        this.allowOverlap = allowOverlap;
+        return this;
+    }
+}
@@ -4,31 +4,76 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.security.KeyStore;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
+import java.util.zip.Deflater;
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
 
+import com.clianz.spur.helpers.AuthHandler;
+import com.clianz.spur.helpers.Authenticator;
+import com.clianz.spur.helpers.BasicAuthenticator;
+import com.clianz.spur.helpers.BearerAuthenticator;
+import com.clianz.spur.helpers.BoonJsonCodec;
+import com.clianz.spur.helpers.BoundedExecutor;
+import com.clianz.spur.helpers.Compression;
+import com.clianz.spur.helpers.CorsPolicy;
+import com.clianz.spur.helpers.ExecutionMode;
+import com.clianz.spur.helpers.JsonCodec;
+import com.clianz.spur.helpers.MetricsRegistry;
+import com.clianz.spur.helpers.OverflowPolicy;
+import com.clianz.spur.helpers.PrometheusMetricsRegistry;
+
 import org.jboss.logging.Logger;
 
+import io.undertow.server.handlers.encoding.ContentEncodingProvider;
+import io.undertow.server.handlers.encoding.DeflateEncodingProvider;
+import io.undertow.server.handlers.encoding.GzipEncodingProvider;
+
 public class SpurOptions {
 
     private static final Logger LOGGER = Logger.getLogger(SpurOptions.class.getName());
 
-    protected boolean gzipEnabled = getEnvProperty("ENABLE_GZIP", false);
+    protected boolean compressionEnabled = getEnvProperty("ENABLE_GZIP", false);
+    protected Map<String, ContentEncodingProvider> compressionCodecs = new LinkedHashMap<>();
+    protected int gzipLevel = Deflater.DEFAULT_COMPRESSION;
+    protected String[] compressibleTypes = Compression.DEFAULT_TYPES;
     protected boolean blockableHandlersEnabled = false;
+    protected ExecutionMode executionMode = ExecutionMode.IO_THREAD;
+    protected int virtualThreadMaxConcurrency = 10_000;
+    protected int virtualThreadMaxQueued = 100_000;
+    protected Map<String, BoundedExecutor> bulkheads = new HashMap<>();
+    protected int rejectedRetryAfterSeconds = 1;
+    protected long asyncTimeoutMillis = 30_000L;
+    protected BiConsumer<Throwable, Res> asyncErrorHandler = AsyncResponder.DEFAULT_ERROR_HANDLER;
+    protected MetricsRegistry metricsRegistry;
+    protected long websocketHighWatermark = 4L * 1024L * 1024L;
+    protected long websocketLowWatermark = 1024L * 1024L;
+    protected OverflowPolicy websocketOverflowPolicy = OverflowPolicy.CLOSE;
+    protected long sseKeepAliveMillis = 15_000L;
+    protected int schedulerThreads = 1;
+    protected boolean autoEtag;
+    protected String metricsPath = "";
     protected String host = getEnvProperty("HOST", "localhost");
     protected Integer port = getEnvProperty("PORT", 8080);
     protected Integer httpsPort = getEnvProperty("HTTPS_PORT", 8443);
     protected Boolean http2Enabled = getEnvProperty("ENABLE_HTTP2", true);
     protected int requestParseTimeOut = 2000;
     protected long maxEntitySize = 1024L * 1024L;
-    protected long gzipMaxSize = 860L;
+    protected long compressionMinSize = 860L;
     protected List<String> corsHeaders = parseCorsString(getEnvProperty("CORS", ""));
+    protected int corsMaxAge = getEnvProperty("CORS_MAX_AGE", 600);
+    protected String corsAllowedHeaders = CorsPolicy.SAFELISTED_HEADERS;
+    protected boolean corsAllowRequestedHeaders = false;
     protected boolean httpsEnabled = getEnvProperty("ENABLE_HTTPS", false);
     protected String keystorePath = getEnvProperty("KEYSTORE", "");
     protected String truststorePath = getEnvProperty("TRUSTSTORE", "");
@@ -36,6 +81,11 @@ public class SpurOptions {
     protected boolean forceHttps = getEnvProperty("FORCE_HTTPS", false);
     protected String basicAuthUser = getEnvProperty("BASIC_AUTH_USER", "");
     protected String basicAuthPassword = getEnvProperty("BASIC_AUTH_PASS", "");
+    protected List<Authenticator> authenticators = new ArrayList<>();
+    protected long authCacheTtlMillis = 60_000L;
+    protected int authCacheMaxEntries = 10_000;
+    protected int authVerificationsPerClient = AuthHandler.DEFAULT_VERIFICATIONS_PER_CLIENT;
+    protected JsonCodec jsonCodec = new BoonJsonCodec();
 
     public SpurOptions() {
     }
@@ -45,11 +95,39 @@ public class SpurOptions {
         return this;
     }
 
+    /**
+     * Comma separated origins allowed to make cross-origin requests: exact origins, wildcard subdomains like
+     * "https://*.example.com", or "*" for any.
+     */
     public SpurOptions enableCorsHeaders(String corsHeaders) {
         this.corsHeaders = parseCorsString(corsHeaders);
         return this;
     }
 
+    /**
+     * How long browsers may cache a preflight response (Access-Control-Max-Age), or -1 to omit it. Defaults to 10 minutes.
+     */
+    public SpurOptions corsMaxAge(int corsMaxAgeSeconds) {
+        this.corsMaxAge = corsMaxAgeSeconds;
+        return this;
+    }
+
+    /**
+     * Comma separated request headers allowed in preflights. Defaults to the CORS-safelisted headers.
+     */
+    public SpurOptions corsAllowedHeaders(String corsAllowedHeaders) {
+        this.corsAllowedHeaders = corsAllowedHeaders;
+        return this;
+    }
+
+    /**
+     * Allows whatever request headers a preflight asks for, instead of only corsAllowedHeaders. Off by default.
+     */
+    public SpurOptions corsAllowRequestedHeaders(boolean corsAllowRequestedHeaders) {
+        this.corsAllowRequestedHeaders = corsAllowRequestedHeaders;
+        return this;
+    }
+
     private static List<String> parseCorsString(String corsString) {
         return Arrays.stream(corsString.split(","))
                 .map(String::trim)
@@ -58,11 +136,182 @@ public class SpurOptions {
 
     public SpurOptions enableBlockableHandlers(boolean blockableEnabled) {
         this.blockableHandlersEnabled = blockableEnabled;
+        this.executionMode = blockableEnabled ? ExecutionMode.WORKER : ExecutionMode.IO_THREAD;
+        return this;
+    }
+
+    /**
+     * Where handlers run unless their route says otherwise. BULKHEAD is per route only, see
+     * {@link RouteOptions#bulkhead(String)}.
+     */
+    public SpurOptions executionMode(ExecutionMode executionMode) {
+        if (executionMode == ExecutionMode.BULKHEAD) {
+            throw new IllegalArgumentException("BULKHEAD can not be the default execution mode, as each route has to name its "
+                    + "bulkhead: use RouteOptions.bulkhead(name)");
+        }
+        this.executionMode = executionMode;
+        this.blockableHandlersEnabled = executionMode != ExecutionMode.IO_THREAD;
+        return this;
+    }
+
+    /**
+     * Limits for {@link ExecutionMode#VIRTUAL_THREAD} handlers: requests beyond maxConcurrent wait in a queue of up to maxQueued,
+     * after which they are answered with 503.
+     */
+    public SpurOptions virtualThreadConcurrency(int maxConcurrent, int maxQueued) {
+        this.virtualThreadMaxConcurrency = maxConcurrent;
+        this.virtualThreadMaxQueued = maxQueued;
+        return this;
+    }
+
+    /**
+     * Declares a named executor with its own threads and queue, for routes registered with {@link RouteOptions#bulkhead(String)}.
+     * Requests arriving when both are full are answered with 503 and a Retry-After header.
+     */
+    public SpurOptions bulkhead(String name, int threads, int maxQueued) {
+        this.bulkheads.put(name, BoundedExecutor.threadPool(name, threads, maxQueued));
+        return this;
+    }
+
+    /**
+     * Retry-After value sent with the 503 when a bulkhead or the virtual thread queue is full.
+     */
+    public SpurOptions rejectedRetryAfterSeconds(int rejectedRetryAfterSeconds) {
+        this.rejectedRetryAfterSeconds = rejectedRetryAfterSeconds;
+        return this;
+    }
+
+    /**
+     * How long async handlers may take before the client gets a 504 Gateway Timeout.
+     */
+    public SpurOptions asyncTimeout(long asyncTimeoutMillis) {
+        this.asyncTimeoutMillis = asyncTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * Maps a failed or timed out async handler to a response. Timeouts arrive as {@link java.util.concurrent.TimeoutException}
+     * and completion exceptions are unwrapped. Defaults to 504 for timeouts and 500 otherwise.
+     */
+    public SpurOptions asyncErrorHandler(BiConsumer<Throwable, Res> asyncErrorHandler) {
+        this.asyncErrorHandler = asyncErrorHandler;
+        return this;
+    }
+
+    /**
+     * Bounds the data queued for each websocket connection. Once a slow client has more than highWatermark bytes waiting, the
+     * policy applies until its queue drains to lowWatermark. Defaults to 4MB/1MB and closing the connection.
+     */
+    public SpurOptions websocketOutboundQueue(long highWatermark, long lowWatermark, OverflowPolicy overflowPolicy) {
+        if (lowWatermark > highWatermark) {
+            throw new IllegalArgumentException("Websocket low watermark must not be above the high watermark");
+        }
+        this.websocketHighWatermark = highWatermark;
+        this.websocketLowWatermark = lowWatermark;
+        this.websocketOverflowPolicy = overflowPolicy;
+        return this;
+    }
+
+    /**
+     * Tags every successful response with a strong ETag hashed from its serialized body, so clients sending it back in
+     * If-None-Match get a 304 without the body. This saves bandwidth, not the handler's work; see
+     * {@link RouteOptions#version(java.util.function.Function)} for that. Off by default.
+     */
+    public SpurOptions autoEtag(boolean autoEtag) {
+        this.autoEtag = autoEtag;
+        return this;
+    }
+
+    /**
+     * Number of threads shared by all scheduled jobs, i.e. how many can run at the same time. Defaults to 1.
+     */
+    public SpurOptions schedulerThreads(int schedulerThreads) {
+        this.schedulerThreads = schedulerThreads;
+        return this;
+    }
+
+    /**
+     * Sends a keep-alive comment to SSE clients that have received nothing for this long, so proxies do not drop idle
+     * streams. 0 disables it. Defaults to 15 seconds.
+     */
+    public SpurOptions sseKeepAlive(long sseKeepAliveMillis) {
+        this.sseKeepAliveMillis = sseKeepAliveMillis;
+        return this;
+    }
+
+    /**
+     * Records per-endpoint request metrics and serves them in Prometheus text format on the given path (e.g. "/metrics").
+     */
+    public SpurOptions enableMetrics(String metricsPath) {
+        if (metricsRegistry == null) {
+            metricsRegistry = new PrometheusMetricsRegistry();
+        }
+        this.metricsPath = metricsPath;
+        return this;
+    }
+
+    /**
+     * Records metrics into a custom registry. Combine with {@link #enableMetrics(String)} to also expose them over HTTP.
+     */
+    public SpurOptions metricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
         return this;
     }
 
+    /**
+     * Compresses responses with the best codec the client accepts: gzip, then deflate, unless codecs are set with
+     * {@link #compression(String, int)} or {@link #compressionCodec(String, ContentEncodingProvider)}.
+     */
+    public SpurOptions enableCompression(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+        return this;
+    }
+
+    /**
+     * @deprecated use {@link #enableCompression(boolean)}, which also negotiates deflate and any configured codecs.
+     */
+    @Deprecated
     public SpurOptions enableGzip(boolean gzipEnabled) {
-        this.gzipEnabled = gzipEnabled;
+        return enableCompression(gzipEnabled);
+    }
+
+    /**
+     * Offers a built-in codec ("gzip" or "deflate") at the level, 1 (fastest) to 9 (smallest). Codecs are preferred in the
+     * order they are added when the client accepts several equally.
+     */
+    public SpurOptions compression(String contentCoding, int level) {
+        if (Compression.GZIP.equals(contentCoding)) {
+            this.gzipLevel = level;
+            this.compressionCodecs.put(contentCoding, new GzipEncodingProvider(level));
+        } else if ("deflate".equals(contentCoding)) {
+            this.compressionCodecs.put(contentCoding, new DeflateEncodingProvider(level));
+        } else {
+            throw new IllegalArgumentException("No built-in codec for '" + contentCoding + "', add it with compressionCodec");
+        }
+        return this;
+    }
+
+    /**
+     * Offers another codec, e.g. "br" or "zstd" from a third-party library, which the JDK does not provide.
+     */
+    public SpurOptions compressionCodec(String contentCoding, ContentEncodingProvider provider) {
+        this.compressionCodecs.put(contentCoding, provider);
+        return this;
+    }
+
+    /**
+     * Responses smaller than this are sent uncompressed. Responses without a Content-Length (streamed) are always compressed.
+     */
+    public SpurOptions compressionMinSize(long compressionMinSize) {
+        this.compressionMinSize = compressionMinSize;
+        return this;
+    }
+
+    /**
+     * Content type prefixes worth compressing, replacing {@link Compression#DEFAULT_TYPES}.
+     */
+    public SpurOptions compressibleTypes(String... compressibleTypes) {
+        this.compressibleTypes = compressibleTypes;
         return this;
     }
 
@@ -72,6 +321,38 @@ public class SpurOptions {
         return this;
     }
 
+    /**
+     * Requires every request, websocket upgrades included, to be accepted by one of the authenticators added, e.g. a
+     * {@link BasicAuthenticator} with several users or a {@link BearerAuthenticator}.
+     */
+    public SpurOptions authenticator(Authenticator authenticator) {
+        this.authenticators.add(authenticator);
+        return this;
+    }
+
+    /**
+     * How long, and for how many distinct credentials, accepted Authorization headers skip verification. Defaults to one
+     * minute and 10000; a TTL of 0 verifies every request.
+     */
+    public SpurOptions authCache(long ttlMillis, int maxEntries) {
+        this.authCacheTtlMillis = ttlMillis;
+        this.authCacheMaxEntries = maxEntries;
+        return this;
+    }
+
+    /**
+     * How many credential verifications one client address may have running at once; requests over it get 429. Defaults to 2.
+     */
+    public SpurOptions authVerificationsPerClient(int authVerificationsPerClient) {
+        this.authVerificationsPerClient = authVerificationsPerClient;
+        return this;
+    }
+
+    public SpurOptions jsonCodec(JsonCodec jsonCodec) {
+        this.jsonCodec = jsonCodec;
+        return this;
+    }
+
     public SpurOptions host(String host) {
         this.host = host;
         return this;
@@ -102,9 +383,12 @@ public class SpurOptions {
         return this;
     }
 
+    /**
+     * @deprecated the size is a minimum; use {@link #compressionMinSize(long)}.
+     */
+    @Deprecated
     public SpurOptions gzipMaxSize(long gzipMaxSize) {
-        this.gzipMaxSize = gzipMaxSize;
-        return this;
+        return compressionMinSize(gzipMaxSize);
     }
 
     public SpurOptions enableHttps(boolean httpsEnabled) {
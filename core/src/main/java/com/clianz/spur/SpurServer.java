@@ -17,36 +17,56 @@ package com.clianz.spur;
 
 import static com.clianz.spur.helpers.HttpMethods.DELETE;
 import static com.clianz.spur.helpers.HttpMethods.GET;
-import static com.clianz.spur.helpers.HttpMethods.HEAD;
-import static com.clianz.spur.helpers.HttpMethods.OPTIONS;
 import static com.clianz.spur.helpers.HttpMethods.PATCH;
 import static com.clianz.spur.helpers.HttpMethods.POST;
 import static com.clianz.spur.helpers.HttpMethods.PUT;
 
+import java.io.InputStream;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.TreeSet;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import javax.net.ssl.SSLContext;
 
-import com.clianz.spur.helpers.BasicAuthHandler;
+import com.clianz.spur.helpers.AuthHandler;
+import com.clianz.spur.helpers.Authenticator;
+import com.clianz.spur.helpers.BasicAuthenticator;
+import com.clianz.spur.helpers.BoundedExecutor;
+import com.clianz.spur.helpers.BroadcastResult;
+import com.clianz.spur.helpers.Compression;
 import com.clianz.spur.helpers.CorsHandler;
+import com.clianz.spur.helpers.CorsPolicy;
+import com.clianz.spur.helpers.CredentialCache;
 import com.clianz.spur.helpers.Endpoint;
+import com.clianz.spur.helpers.ExecutionMode;
+import com.clianz.spur.helpers.JobScheduler;
+import com.clianz.spur.helpers.JsonCodec;
+import com.clianz.spur.helpers.OutboundQueue;
 import com.clianz.spur.helpers.RedirectHttpsHandler;
 import com.clianz.spur.helpers.RequestFilter;
+import com.clianz.spur.helpers.ResponseCache;
+import com.clianz.spur.helpers.RouteTrie;
+import com.clianz.spur.helpers.RoutingHandler;
+import com.clianz.spur.helpers.ScheduledJob;
+import com.clianz.spur.helpers.SseConnection;
+import com.clianz.spur.helpers.SsePublisher;
+import com.clianz.spur.helpers.StaticFileHandler;
+import com.clianz.spur.helpers.WebSocketBroadcaster;
 import com.clianz.spur.helpers.WebSocketHandler;
 import com.clianz.spur.helpers.WebSocketMessageSender;
 import com.clianz.spur.helpers.WebSocketOnConnect;
 import com.clianz.spur.helpers.WebSocketOnMessage;
+import com.clianz.spur.helpers.WebSocketReceiveListener;
 
 import org.jboss.logging.Logger;
 
@@ -55,37 +75,38 @@ import io.undertow.Undertow;
 import io.undertow.UndertowOptions;
 import io.undertow.predicate.Predicates;
 import io.undertow.server.HttpHandler;
-import io.undertow.server.HttpServerExchange;
-import io.undertow.server.handlers.PathTemplateHandler;
-import io.undertow.server.handlers.encoding.ContentEncodingRepository;
-import io.undertow.server.handlers.encoding.EncodingHandler;
+import io.undertow.server.handlers.encoding.ContentEncodingProvider;
+import io.undertow.server.handlers.encoding.DeflateEncodingProvider;
 import io.undertow.server.handlers.encoding.GzipEncodingProvider;
-import io.undertow.server.handlers.sse.ServerSentEventConnection;
-import io.undertow.server.handlers.sse.ServerSentEventHandler;
 import io.undertow.util.Headers;
 import io.undertow.util.HttpString;
-import io.undertow.util.StatusCodes;
-import io.undertow.websockets.core.AbstractReceiveListener;
-import io.undertow.websockets.core.BufferedTextMessage;
-import io.undertow.websockets.core.WebSocketChannel;
-import io.undertow.websockets.core.WebSockets;
 
 public class SpurServer {
 
     private static final Logger LOGGER = Logger.getLogger(SpurServer.class.getName());
     private static final String SERVER_ALREADY_DEFINED = "Server already defined.";
-    private static final HttpString ACCESS_CONTROL_REQUEST_METHOD = new HttpString("Access-Control-Request-Method");
-    private static final HttpString ACCESS_CONTROL_ALLOW_METHOD = new HttpString("Access-Control-Allow-Methods");
+    private static final String VIRTUAL_THREAD_EXECUTOR = "virtual";
+    private static final int DEFAULT_SSE_REPLAY_CAPACITY = 256;
+    private static final BroadcastResult NO_RECIPIENTS = new BroadcastResult(0, 0);
+    private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
 
     private Undertow server = null;
     private Boolean serverLock = true;
     private AtomicBoolean serviceDefined = new AtomicBoolean(false);
+    private JsonCodec jsonCodec;
+    private long asyncTimeoutMillis;
+    private BiConsumer<Throwable, Res> asyncErrorHandler;
 
     private Map<String, Map<HttpString, Endpoint>> endpointsMap = new HashMap<>();
-    private Map<String, Set<WebSocketChannel>> webSocketChannelsMap = new HashMap<>();
+    private Map<String, WebSocketBroadcaster> webSocketBroadcasterMap = new HashMap<>();
     private Map<String, WebSocketHandler> webSocketHandlerMap = new HashMap<>();
-    private Map<String, ServerSentEventHandler> sseHandlerMap = new HashMap<>();
+    private Map<String, SsePublisher> ssePublisherMap = new HashMap<>();
+    private Map<String, StaticFileHandler> staticFileHandlerMap = new HashMap<>();
     private List<RequestFilter> requestFilters = new ArrayList<>();
+    private Map<String, BoundedExecutor> executors = new HashMap<>();
+    private final JobScheduler jobScheduler = new JobScheduler();
+    private Compression compression;
+    private CorsPolicy corsPolicy;
 
     public void start() {
         startServer(Undertow.builder(), new SpurOptions());
@@ -102,7 +123,11 @@ public class SpurServer {
     public void stop() {
         synchronized (serverLock) {
             if (server != null) {
+                // Executors first, so the requests still queued on them get their 503 before the connections close.
+                executors.values()
+                        .forEach(BoundedExecutor::shutdown);
                 server.stop();
+                jobScheduler.shutdown();
                 LOGGER.info("Server stopped.");
             } else {
                 throw new IllegalStateException("Server did not exist.");
@@ -113,7 +138,10 @@ public class SpurServer {
     public void resume() {
         synchronized (serverLock) {
             if (server != null) {
+                executors.values()
+                        .forEach(BoundedExecutor::resume);
                 server.start();
+                jobScheduler.resume();
                 LOGGER.info("Server resumed.");
             } else {
                 throw new IllegalStateException("Server did not exist.");
@@ -122,77 +150,236 @@ public class SpurServer {
     }
 
     public SpurServer get(String path, BiConsumer<Req<Void>, Res> reqRes) {
-        return setPathHandler(GET, path, reqRes, null);
+        return get(path, new RouteOptions(), reqRes);
+    }
+
+    public SpurServer get(String path, RouteOptions routeOptions, BiConsumer<Req<Void>, Res> reqRes) {
+        return setPathHandler(GET, path, reqRes, null, routeOptions);
     }
 
     public <T> SpurServer put(String path, Class<T> requestBodyClass, BiConsumer<Req<T>, Res> reqRes) {
-        return setPathHandler(PUT, path, reqRes, requestBodyClass);
+        return put(path, requestBodyClass, new RouteOptions(), reqRes);
+    }
+
+    public <T> SpurServer put(String path, Class<T> requestBodyClass, RouteOptions routeOptions, BiConsumer<Req<T>, Res> reqRes) {
+        return setPathHandler(PUT, path, reqRes, requestBodyClass, routeOptions);
     }
 
     public <T> SpurServer post(String path, Class<T> requestBodyClass, BiConsumer<Req<T>, Res> reqRes) {
-        return setPathHandler(POST, path, reqRes, requestBodyClass);
+        return post(path, requestBodyClass, new RouteOptions(), reqRes);
+    }
+
+    public <T> SpurServer post(String path, Class<T> requestBodyClass, RouteOptions routeOptions, BiConsumer<Req<T>, Res> reqRes) {
+        return setPathHandler(POST, path, reqRes, requestBodyClass, routeOptions);
     }
 
     public <T> SpurServer patch(String path, Class<T> requestBodyClass, BiConsumer<Req<T>, Res> reqRes) {
-        return setPathHandler(PATCH, path, reqRes, requestBodyClass);
+        return patch(path, requestBodyClass, new RouteOptions(), reqRes);
+    }
+
+    public <T> SpurServer patch(String path, Class<T> requestBodyClass, RouteOptions routeOptions, BiConsumer<Req<T>, Res> reqRes) {
+        return setPathHandler(PATCH, path, reqRes, requestBodyClass, routeOptions);
     }
 
     public SpurServer delete(String path, BiConsumer<Req<Void>, Res> reqRes) {
-        return setPathHandler(DELETE, path, reqRes, null);
+        return delete(path, new RouteOptions(), reqRes);
+    }
+
+    public SpurServer delete(String path, RouteOptions routeOptions, BiConsumer<Req<Void>, Res> reqRes) {
+        return setPathHandler(DELETE, path, reqRes, null, routeOptions);
+    }
+
+    public SpurServer getAsync(String path, Function<Req<Void>, CompletionStage<?>> handler) {
+        return getAsync(path, new RouteOptions(), handler);
+    }
+
+    /**
+     * Registers a non-blocking handler. The exchange stays open until the returned stage completes; its value is sent as the
+     * response body (Strings and ByteBuffers as-is, anything else as JSON) and failures go to the async error handler.
+     */
+    public SpurServer getAsync(String path, RouteOptions routeOptions, Function<Req<Void>, CompletionStage<?>> handler) {
+        return get(path, routeOptions, new AsyncResponder<>(this, handler, routeOptions.asyncTimeoutMillis));
+    }
+
+    public <T> SpurServer putAsync(String path, Class<T> requestBodyClass, Function<Req<T>, CompletionStage<?>> handler) {
+        return putAsync(path, requestBodyClass, new RouteOptions(), handler);
+    }
+
+    public <T> SpurServer putAsync(String path, Class<T> requestBodyClass, RouteOptions routeOptions,
+            Function<Req<T>, CompletionStage<?>> handler) {
+        return put(path, requestBodyClass, routeOptions, new AsyncResponder<>(this, handler, routeOptions.asyncTimeoutMillis));
+    }
+
+    public <T> SpurServer postAsync(String path, Class<T> requestBodyClass, Function<Req<T>, CompletionStage<?>> handler) {
+        return postAsync(path, requestBodyClass, new RouteOptions(), handler);
+    }
+
+    public <T> SpurServer postAsync(String path, Class<T> requestBodyClass, RouteOptions routeOptions,
+            Function<Req<T>, CompletionStage<?>> handler) {
+        return post(path, requestBodyClass, routeOptions, new AsyncResponder<>(this, handler, routeOptions.asyncTimeoutMillis));
+    }
+
+    public <T> SpurServer patchAsync(String path, Class<T> requestBodyClass, Function<Req<T>, CompletionStage<?>> handler) {
+        return patchAsync(path, requestBodyClass, new RouteOptions(), handler);
+    }
+
+    public <T> SpurServer patchAsync(String path, Class<T> requestBodyClass, RouteOptions routeOptions,
+            Function<Req<T>, CompletionStage<?>> handler) {
+        return patch(path, requestBodyClass, routeOptions, new AsyncResponder<>(this, handler, routeOptions.asyncTimeoutMillis));
+    }
+
+    public SpurServer deleteAsync(String path, Function<Req<Void>, CompletionStage<?>> handler) {
+        return deleteAsync(path, new RouteOptions(), handler);
+    }
+
+    public SpurServer deleteAsync(String path, RouteOptions routeOptions, Function<Req<Void>, CompletionStage<?>> handler) {
+        return delete(path, routeOptions, new AsyncResponder<>(this, handler, routeOptions.asyncTimeoutMillis));
+    }
+
+    /**
+     * @return the named executor handlers are dispatched to ("virtual" or a bulkhead name), for reading its queueing metrics;
+     * null if unused.
+     */
+    public BoundedExecutor getExecutor(String name) {
+        return executors.get(name);
     }
 
     public SpurServer preFilterRequests(Predicate<Req> assertion, Consumer<Res> failureHandler) {
         requestFilters.add(new RequestFilter(httpServerExchange -> assertion.test(new Req(httpServerExchange, null)),
-                httpServerExchange -> failureHandler.accept(new Res(httpServerExchange))));
+                httpServerExchange -> failureHandler.accept(new Res(httpServerExchange, jsonCodec))));
         return this;
     }
 
     public SpurServer schedule(long intervalSeconds, Runnable runnable) {
-        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-        scheduler.scheduleAtFixedRate(runnable, 0, intervalSeconds, TimeUnit.SECONDS);
+        schedule(intervalSeconds, TimeUnit.SECONDS, new ScheduleOptions(), runnable);
         return this;
     }
 
+    public ScheduledJob schedule(long interval, TimeUnit unit, Runnable runnable) {
+        return schedule(interval, unit, new ScheduleOptions(), runnable);
+    }
+
+    /**
+     * Runs the task periodically on the server's shared scheduler threads, which stop with the server.
+     *
+     * @return a handle to cancel the job and read its run statistics.
+     */
+    public ScheduledJob schedule(long interval, TimeUnit unit, ScheduleOptions scheduleOptions, Runnable runnable) {
+        return jobScheduler.schedule(scheduleOptions.name, unit.toNanos(interval), scheduleOptions.mode,
+                scheduleOptions.initialDelayNanos, scheduleOptions.jitterNanos, scheduleOptions.allowOverlap, runnable);
+    }
+
     public SpurServer sse(String path) {
-        sseHandlerMap.put(path, Handlers.serverSentEvents());
+        return sse(path, DEFAULT_SSE_REPLAY_CAPACITY);
+    }
+
+    /**
+     * Serves server-sent events on the path, keeping the last replayCapacity events so reconnecting clients that send
+     * Last-Event-ID get what they missed.
+     */
+    public SpurServer sse(String path, int replayCapacity) {
+        ssePublisherMap.put(path, new SsePublisher(replayCapacity));
+        return this;
+    }
+
+    public SpurServer staticFiles(String urlPrefix, String directory) {
+        return staticFiles(urlPrefix, directory, new StaticFileOptions());
+    }
+
+    /**
+     * Serves the files in the directory under the URL prefix, e.g. staticFiles("/assets", "public").
+     */
+    public SpurServer staticFiles(String urlPrefix, String directory, StaticFileOptions staticFileOptions) {
+        if (serviceDefined.get()) {
+            throw new IllegalStateException(SERVER_ALREADY_DEFINED);
+        }
+        String prefix = StaticFileHandler.normalizePrefix(urlPrefix);
+        staticFileHandlerMap.put(prefix, new StaticFileHandler(Paths.get(directory), staticFileOptions.memoryCacheBytes,
+                staticFileOptions.maxCachedFileSize, staticFileOptions.watchForChanges, staticFileOptions.precompressed,
+                staticFileOptions.cacheControlMaxAge, staticFileOptions.welcomeFiles));
         return this;
     }
 
     public SpurServer websocket(String pathPrefix, WebSocketOnConnect webSocketOnConnect, WebSocketOnMessage webSocketOnMessage) {
-        webSocketHandlerMap.put(pathPrefix, new WebSocketHandler(pathPrefix, webSocketOnConnect, webSocketOnMessage));
+        return websocket(pathPrefix, new WebSocketOptions(), webSocketOnConnect, webSocketOnMessage);
+    }
+
+    public SpurServer websocket(String pathPrefix, WebSocketOptions webSocketOptions, WebSocketOnConnect webSocketOnConnect,
+            WebSocketOnMessage webSocketOnMessage) {
+        WebSocketHandler webSocketHandler = new WebSocketHandler(pathPrefix, webSocketOnConnect, webSocketOnMessage);
+        webSocketHandler.setMaxMessageSize(webSocketOptions.maxMessageSize);
+        webSocketHandler.setWebSocketOnBinaryMessage(webSocketOptions.onBinaryMessage);
+        webSocketHandler.setWebSocketOnBinaryChunk(webSocketOptions.onBinaryChunk);
+        webSocketHandlerMap.put(pathPrefix, webSocketHandler);
         return this;
     }
 
-    public void broadcastWebsockets(String websocketPath, String msg) {
-        Set<WebSocketChannel> webSocketChannels = webSocketChannelsMap.get(websocketPath);
-        if (webSocketChannels != null) {
-            new ArrayList<>(webSocketChannels).forEach(webSocketChannel -> WebSockets.sendText(msg, webSocketChannel, null));
+    /**
+     * Sends the message to every websocket connected on the path. The message is encoded once and written by each
+     * connection's IO thread, so this returns without waiting for the writes.
+     *
+     * @return completes with the delivery counts once every write has finished.
+     */
+    public CompletableFuture<BroadcastResult> broadcastWebsockets(String websocketPath, String msg) {
+        WebSocketBroadcaster broadcaster = webSocketBroadcasterMap.get(websocketPath);
+        if (broadcaster == null) {
+            return CompletableFuture.completedFuture(NO_RECIPIENTS);
         }
+        return broadcaster.broadcast(msg);
     }
 
-    public void broadcastWebsockets(String websocketPath, String msg, String channelAttributeKey,
+    public CompletableFuture<BroadcastResult> broadcastWebsockets(String websocketPath, String msg, String channelAttributeKey,
             Predicate<Object> channelAttributeValueTest) {
-        Set<WebSocketChannel> webSocketChannels = webSocketChannelsMap.get(websocketPath);
-        if (webSocketChannels != null) {
-            new ArrayList<>(webSocketChannels).stream()
-                    .filter(webSocketChannel -> channelAttributeValueTest.test(webSocketChannel.getAttribute(channelAttributeKey)))
-                    .forEach(webSocketChannel -> WebSockets.sendText(msg, webSocketChannel, null));
+        WebSocketBroadcaster broadcaster = webSocketBroadcasterMap.get(websocketPath);
+        if (broadcaster == null) {
+            return CompletableFuture.completedFuture(NO_RECIPIENTS);
         }
+        return broadcaster.broadcast(msg,
+                webSocketChannel -> channelAttributeValueTest.test(webSocketChannel.getAttribute(channelAttributeKey)));
     }
 
-    public void broadcastSse(String path, String data) {
-        ServerSentEventHandler serverSentEventHandler = sseHandlerMap.get(path);
-        if (serverSentEventHandler != null) {
-            serverSentEventHandler.getConnections()
-                    .forEach(serverSentEventConnection -> serverSentEventConnection.send(data));
+    /**
+     * Sends the message to the websockets on the path that subscribed to the topic via WebSocketMessageSender.subscribe. The
+     * cost scales with the number of subscribers, not with the number of connections.
+     *
+     * @return completes with the delivery counts once every write has finished.
+     */
+    public CompletableFuture<BroadcastResult> broadcastToTopic(String websocketPath, String topic, String msg) {
+        WebSocketBroadcaster broadcaster = webSocketBroadcasterMap.get(websocketPath);
+        if (broadcaster == null) {
+            return CompletableFuture.completedFuture(NO_RECIPIENTS);
         }
+        return broadcaster.broadcastToTopic(topic, msg);
     }
 
-    public void broadcastSse(String path, Consumer<ServerSentEventConnection> action) {
-        ServerSentEventHandler serverSentEventHandler = sseHandlerMap.get(path);
-        if (serverSentEventHandler != null) {
-            serverSentEventHandler.getConnections()
-                    .forEach(action::accept);
+    /**
+     * Sends the data to every client listening on the path. The event is encoded once and kept for replay.
+     *
+     * @return the event id, or -1 if no SSE path was registered.
+     */
+    public long broadcastSse(String path, String data) {
+        return broadcastSse(path, null, data);
+    }
+
+    public long broadcastSse(String path, String event, String data) {
+        SsePublisher ssePublisher = ssePublisherMap.get(path);
+        if (ssePublisher == null) {
+            return -1;
+        }
+        return ssePublisher.publish(event, data);
+    }
+
+    /**
+     * Runs the action for every client listening on the path, e.g. to send each one its own event.
+     * <p>
+     * The action used to receive Undertow's ServerSentEventConnection. Lambdas only calling send(data), send(event, data),
+     * close() or reading request headers compile unchanged against {@link SseConnection}; code naming the Undertow type has to
+     * switch to SseConnection, as both signatures erase to the same method and can not be overloaded.
+     */
+    public void broadcastSse(String path, Consumer<SseConnection> action) {
+        SsePublisher ssePublisher = ssePublisherMap.get(path);
+        if (ssePublisher != null) {
+            ssePublisher.forEachConnection(action);
         }
     }
 
@@ -203,6 +390,37 @@ public class SpurServer {
 
         LOGGER.info("Listening to " + options.host + ":" + options.port);
 
+        jsonCodec = options.jsonCodec;
+        asyncTimeoutMillis = options.asyncTimeoutMillis;
+        asyncErrorHandler = options.asyncErrorHandler;
+        compression = buildCompression(options);
+        corsPolicy = new CorsPolicy(options.corsHeaders, options.corsMaxAge, options.corsAllowedHeaders,
+                options.corsAllowRequestedHeaders);
+        endpointsMap.values()
+                .forEach(methodEndpointMap -> methodEndpointMap.values()
+                        .forEach(endpoint -> {
+                            endpoint.setJsonCodec(jsonCodec);
+                            resolveExecutionMode(options, endpoint);
+                            if (endpoint.getAutoEtag() == null) {
+                                endpoint.setAutoEtag(options.autoEtag);
+                            }
+                            if (endpoint.getResponseCache() != null) {
+                                boolean compressed = endpoint.getCompress() != null ? endpoint.getCompress() : options.compressionEnabled;
+                                endpoint.getResponseCache()
+                                        .setCompression(compressed ? compression : null);
+                            }
+                            if (options.metricsRegistry != null) {
+                                endpoint.setMetrics(options.metricsRegistry.registerEndpoint(endpoint.getMethod()
+                                        .toString(), endpoint.getPath()));
+                            }
+                        }));
+        jobScheduler.setThreads(options.schedulerThreads);
+        if (options.metricsRegistry != null) {
+            executors.values()
+                    .forEach(options.metricsRegistry::registerExecutor);
+            jobScheduler.setMetricsRegistry(options.metricsRegistry);
+        }
+
         if (options.httpsEnabled) {
             SSLContext sslContext = null;
             try {
@@ -226,6 +444,7 @@ public class SpurServer {
                     .setServerOption(UndertowOptions.REQUEST_PARSE_TIMEOUT, options.requestParseTimeOut)
                     .setServerOption(UndertowOptions.ENABLE_HTTP2, options.http2Enabled)
                     .setServerOption(UndertowOptions.MAX_ENTITY_SIZE, options.maxEntitySize)
+                    .setServerOption(UndertowOptions.RECORD_REQUEST_START_TIME, options.metricsRegistry != null)
                     .setHandler(getHandlers(options))
                     .build();
             server.start();
@@ -233,54 +452,127 @@ public class SpurServer {
 
     }
 
-    private <T> SpurServer setPathHandler(HttpString method, String path, BiConsumer<Req<T>, Res> reqRes, Class<T> classType) {
+    long getAsyncTimeoutMillis() {
+        return asyncTimeoutMillis;
+    }
+
+    BiConsumer<Throwable, Res> getAsyncErrorHandler() {
+        return asyncErrorHandler;
+    }
+
+    private <T> SpurServer setPathHandler(HttpString method, String path, BiConsumer<Req<T>, Res> reqRes, Class<T> classType,
+            RouteOptions routeOptions) {
         if (serviceDefined.get()) {
             throw new IllegalStateException(SERVER_ALREADY_DEFINED);
         }
+        Endpoint endpoint = new Endpoint(method, path, reqRes, classType);
+        endpoint.setValidationMode(routeOptions.validationMode);
+        endpoint.setExecutionMode(routeOptions.executionMode);
+        endpoint.setExecutorName(routeOptions.bulkhead);
+        endpoint.setAutoEtag(routeOptions.autoEtag);
+        endpoint.setVersionToken(routeOptions.versionToken);
+        endpoint.setMaxEntitySize(routeOptions.maxEntitySize);
+        endpoint.setCompress(routeOptions.compress);
+        if (routeOptions.cacheOptions != null) {
+            if (!method.equals(GET)) {
+                throw new IllegalArgumentException("Response caching is only supported on GET routes: " + method + " " + path);
+            }
+            CacheOptions cacheOptions = routeOptions.cacheOptions;
+            endpoint.setResponseCache(new ResponseCache(cacheOptions.ttlNanos, cacheOptions.maxBytes, cacheOptions.varyHeaders,
+                    cacheOptions.offHeap));
+            endpoint.setCacheWaitNanos(cacheOptions.waitNanos);
+            endpoint.setCacheMaxWaiters(cacheOptions.maxWaiters);
+        }
         endpointsMap.putIfAbsent(path, new HashMap<>());
         endpointsMap.get(path)
-                .put(method, new Endpoint(method, path, reqRes, classType));
+                .put(method, endpoint);
         return this;
     }
 
+    private static Compression buildCompression(SpurOptions options) {
+        Map<String, ContentEncodingProvider> codecs = new LinkedHashMap<>(options.compressionCodecs);
+        if (codecs.isEmpty()) {
+            codecs.put(Compression.GZIP, new GzipEncodingProvider(options.gzipLevel));
+            codecs.put("deflate", new DeflateEncodingProvider());
+        }
+        return new Compression(options.compressionEnabled, options.compressionMinSize, options.compressibleTypes, codecs,
+                options.gzipLevel);
+    }
+
+    private boolean anyEndpoint(Predicate<Endpoint> predicate) {
+        return endpointsMap.values()
+                .stream()
+                .anyMatch(methodEndpointMap -> methodEndpointMap.values()
+                        .stream()
+                        .anyMatch(predicate));
+    }
+
+    private void resolveExecutionMode(SpurOptions options, Endpoint endpoint) {
+        if (endpoint.getExecutionMode() == null) {
+            endpoint.setExecutionMode(options.executionMode);
+        }
+        if (endpoint.getExecutionMode() == ExecutionMode.IO_THREAD && InputStream.class.equals(endpoint.getBodyClassType())) {
+            // Reading an InputStream blocks, which the IO thread must never do.
+            endpoint.setExecutionMode(ExecutionMode.WORKER);
+        }
+        if (endpoint.getExecutionMode() == ExecutionMode.VIRTUAL_THREAD) {
+            endpoint.setExecutor(executors.computeIfAbsent(VIRTUAL_THREAD_EXECUTOR,
+                    name -> BoundedExecutor.virtualThreads(name, options.virtualThreadMaxConcurrency, options.virtualThreadMaxQueued)));
+        } else if (endpoint.getExecutionMode() == ExecutionMode.BULKHEAD) {
+            if (endpoint.getExecutorName() == null) {
+                throw new IllegalArgumentException("Route " + endpoint.getPath() + " runs in BULKHEAD mode but names no bulkhead, "
+                        + "use RouteOptions.bulkhead(name)");
+            }
+            BoundedExecutor bulkhead = options.bulkheads.get(endpoint.getExecutorName());
+            if (bulkhead == null) {
+                throw new IllegalArgumentException(
+                        "Bulkhead '" + endpoint.getExecutorName() + "' used by " + endpoint.getPath() + " was not declared in SpurOptions");
+            }
+            executors.put(bulkhead.getName(), bulkhead);
+            endpoint.setExecutor(bulkhead);
+        }
+    }
+
     private HttpHandler getHandlers(SpurOptions options) {
         // Path handler
-        PathTemplateHandler pathTemplateHandler = Handlers.pathTemplate();
-        endpointsMap.forEach((path, methodEndpointMap) -> pathTemplateHandler.add(path, new HttpHandler() {
-            public void handleRequest(HttpServerExchange exchange) throws Exception {
-                // non-blocking
-                if (options.blockableHandlersEnabled && exchange.isInIoThread()) {
-                    // LOGGER.info("Is in IO thread, dispatching for blockableHandlersEnabled...");
-                    exchange.dispatch(this);
-                    return;
-                }
-                // handler code
-                // LOGGER.info("STARTING Async");
-                invokePathTemplateHandler(options, methodEndpointMap, exchange);
-            }
-        }));
+        RouteTrie.Builder<HttpHandler> routes = RouteTrie.builder();
+        endpointsMap.forEach((path, methodEndpointMap) -> routes.add(path, new RouteHandler(options, corsPolicy, methodEndpointMap)));
 
         // Websocket
         if (!webSocketHandlerMap.isEmpty()) {
             webSocketHandlerMap.forEach((pathPrefix, webSocketHandler) -> {
                 LOGGER.info("Adding WS for path: " + webSocketHandler.getPath());
-                addWebSocketHandler(pathTemplateHandler, webSocketHandler);
+                webSocketBroadcasterMap.put(webSocketHandler.getPath(), new WebSocketBroadcaster(options.websocketHighWatermark,
+                        options.websocketLowWatermark, options.websocketOverflowPolicy));
+                routes.add(webSocketHandler.getPath(), getWebSocketHandler(webSocketHandler));
             });
         }
 
+        // Static files
+        staticFileHandlerMap.forEach((prefix, staticFileHandler) -> routes.add(StaticFileHandler.routeFor(prefix), staticFileHandler));
+
         // SSE
-        if (!sseHandlerMap.isEmpty()) {
-            sseHandlerMap.forEach(pathTemplateHandler::add);
+        ssePublisherMap.forEach((path, ssePublisher) -> {
+            ssePublisher.setKeepAliveMillis(options.sseKeepAliveMillis);
+            routes.add(path, ssePublisher);
+        });
+        // Metrics
+        if (options.metricsRegistry != null && !options.metricsPath.isEmpty()) {
+            routes.add(options.metricsPath, exchange -> {
+                exchange.getResponseHeaders()
+                        .put(Headers.CONTENT_TYPE, PROMETHEUS_CONTENT_TYPE);
+                exchange.getResponseSender()
+                        .send(options.metricsRegistry.scrape());
+            });
         }
+        HttpHandler routingHandler = new RoutingHandler(routes.build());
 
         // CORS
-        HttpHandler httpHandler = Handlers.predicate(exchange -> isValidCorsOrigin(options, getRequestHeader(exchange, Headers.ORIGIN)),
-                new CorsHandler(pathTemplateHandler), pathTemplateHandler);
+        HttpHandler httpHandler = corsPolicy.isEnabled() ? new CorsHandler(routingHandler, corsPolicy) : routingHandler;
 
-        // Gzip
-        if (options.gzipEnabled) {
-            httpHandler = new EncodingHandler(new ContentEncodingRepository().addEncodingHandler("gzip", new GzipEncodingProvider(), 50,
-                    Predicates.maxContentSize(options.gzipMaxSize))).setNext(httpHandler);
+        // Compression
+        if (options.compressionEnabled || anyEndpoint(endpoint -> Boolean.TRUE.equals(endpoint.getCompress()))) {
+            httpHandler = compression.wrap(httpHandler);
         }
 
         // Custom handlers
@@ -291,9 +583,14 @@ public class SpurServer {
         // Graceful shutdown
         httpHandler = Handlers.gracefulShutdown(httpHandler);
 
-        // Basic auth
+        // Auth, covering websocket upgrades as they are routed through here too
+        List<Authenticator> authenticators = new ArrayList<>(options.authenticators);
         if (!options.basicAuthUser.isEmpty() && !options.basicAuthPassword.isEmpty()) {
-            httpHandler = new BasicAuthHandler(httpHandler, options.basicAuthUser, options.basicAuthPassword);
+            authenticators.add(0, new BasicAuthenticator().user(options.basicAuthUser, options.basicAuthPassword));
+        }
+        if (!authenticators.isEmpty()) {
+            httpHandler = new AuthHandler(httpHandler, authenticators,
+                    new CredentialCache(options.authCacheTtlMillis, options.authCacheMaxEntries), options.authVerificationsPerClient);
         }
 
         // Force HTTPS
@@ -304,91 +601,22 @@ public class SpurServer {
         return httpHandler;
     }
 
-    private void addWebSocketHandler(PathTemplateHandler pathTemplateHandler, WebSocketHandler webSocketHandler) {
-        // TODO: Add security/auth
-        pathTemplateHandler.add(webSocketHandler.getPath(), Handlers.websocket((exchange, channel) -> {
-            webSocketChannelsMap.putIfAbsent(webSocketHandler.getPath(), channel.getPeerConnections());
+    private HttpHandler getWebSocketHandler(WebSocketHandler webSocketHandler) {
+        return Handlers.websocket((exchange, channel) -> {
+            WebSocketBroadcaster broadcaster = webSocketBroadcasterMap.get(webSocketHandler.getPath());
+            OutboundQueue outboundQueue = broadcaster.add(channel);
             //            double randomKey = Math.random();
             //            LOGGER.info("Setting secret: " + randomKey);
             //            channel.setAttribute("myKey", "secret key: " + randomKey);
             //            broadcastToAllWebsockets("A new user connected!");
 
-            WebSocketMessageSender sender = new WebSocketMessageSender(channel);
+            WebSocketMessageSender sender = new WebSocketMessageSender(channel, broadcaster, outboundQueue);
             webSocketHandler.getWebSocketOnConnect()
                     .onConnect(sender);
             channel.getReceiveSetter()
-                    .set(new AbstractReceiveListener() {
-                        @Override
-                        protected void onFullTextMessage(WebSocketChannel channel, BufferedTextMessage message) {
-                            //                            LOGGER.info("Key was: " + channel.getAttribute("myKey"));
-                            webSocketHandler.getWebSocketOnMessage()
-                                    .onMessage(message.getData(), sender);
-                        }
-                    });
+                    .set(new WebSocketReceiveListener(webSocketHandler, sender));
             channel.resumeReceives();
-        }));
-    }
-
-    private void invokePathTemplateHandler(SpurOptions options, Map<HttpString, Endpoint> methodEndpointsMap, HttpServerExchange exchange) {
-
-        HttpString requestMethod = exchange.getRequestMethod();
-        String requestAccessControlRequestMethod = getRequestHeader(exchange, ACCESS_CONTROL_REQUEST_METHOD);
-        String requestOrigin = getRequestHeader(exchange, Headers.ORIGIN);
-        if (requestMethod.equals(HEAD)) {
-            requestMethod = GET;
-        } else if (requestMethod.equals(OPTIONS) && requestAccessControlRequestMethod != null && methodEndpointsMap.containsKey(
-                new HttpString(requestAccessControlRequestMethod)) && isValidCorsOrigin(options, requestOrigin)) {
-            setCorsMethodHeader(options, methodEndpointsMap, exchange);
-            exchange.endExchange();
-            return;
-        }
-
-        Endpoint endpoint = methodEndpointsMap.get(requestMethod);
-        if (endpoint == null) {
-            exchange.setStatusCode(StatusCodes.METHOD_NOT_ALLOWED);
-            exchange.getResponseHeaders()
-                    .put(Headers.ALLOW, getAllowedMethods(methodEndpointsMap, options));
-            exchange.endExchange();
-            return;
-        }
-
-        Req req = new Req(exchange, endpoint.getBodyClassType());
-        req.parseBody((newExchange, body) -> endpoint.getReqResBiConsumer()
-                .accept(req, new Res(newExchange)));
-    }
-
-    private String getRequestHeader(HttpServerExchange exchange, HttpString headerName) {
-        if (exchange.getRequestHeaders()
-                .contains(headerName)) {
-            return exchange.getRequestHeaders()
-                    .get(headerName)
-                    .getFirst();
-        }
-        return null;
-    }
-
-    private boolean isValidCorsOrigin(SpurOptions options, String requestOrigin) {
-        return options.corsHeaders.contains("*") || options.corsHeaders.contains(requestOrigin);
-    }
-
-    private void setCorsMethodHeader(SpurOptions options, Map<HttpString, Endpoint> methodEndpointMap, HttpServerExchange exchange) {
-        exchange.getResponseHeaders()
-                .put(ACCESS_CONTROL_ALLOW_METHOD, getAllowedMethods(methodEndpointMap, options));
-    }
-
-    private String getAllowedMethods(Map<HttpString, Endpoint> methodEndpointMap, SpurOptions options) {
-        StringBuilder methodsAllowed = new StringBuilder();
-        Set<HttpString> methodsDefined = new TreeSet<>(methodEndpointMap.keySet());
-        if (methodsDefined.contains(GET)) {
-            methodsDefined.add(HEAD);
-        }
-        if (!options.corsHeaders.isEmpty()) {
-            methodsDefined.add(OPTIONS);
-        }
-
-        methodsDefined.forEach(httpString -> methodsAllowed.append(", " + httpString));
-        return methodsAllowed.toString()
-                .substring(2);
+        });
     }
 
 }
@@ -0,0 +1,56 @@
+package com.clianz.spur;
+
+/**
+ * Settings for a static file directory, passed to {@link SpurServer#staticFiles(String, String, StaticFileOptions)}.
+ */
+public class StaticFileOptions {
+
+    protected long memoryCacheBytes = 16L * 1024L * 1024L;
+    protected long maxCachedFileSize = 64L * 1024L;
+    protected Integer cacheControlMaxAge;
+    protected boolean watchForChanges = true;
+    protected boolean precompressed = true;
+    protected String[] welcomeFiles = { "index.html" };
+
+    public StaticFileOptions() {
+    }
+
+    /**
+     * Memory for keeping small, frequently requested files in direct buffers; 0 disables it. Defaults to 16MB.
+     */
+    public StaticFileOptions memoryCache(long memoryCacheBytes, long maxCachedFileSize) {
+        this.memoryCacheBytes = memoryCacheBytes;
+        this.maxCachedFileSize = maxCachedFileSize;
+        return this;
+    }
+
+    /**
+     * Sends Cache-Control max-age, in seconds. Not sent by default.
+     */
+    public StaticFileOptions cacheControlMaxAge(int seconds) {
+        this.cacheControlMaxAge = seconds;
+        return this;
+    }
+
+    /**
+     * Watches the directory and drops cached metadata and contents when files change, so requests never stat the file
+     * system. When off, metadata is re-checked every 2 seconds instead. On by default.
+     */
+    public StaticFileOptions watchForChanges(boolean watchForChanges) {
+        this.watchForChanges = watchForChanges;
+        return this;
+    }
+
+    /**
+     * Serves a .br or .gz sibling of the requested file, when there is one and the client accepts that encoding. On by default.
+     */
+    public StaticFileOptions precompressed(boolean precompressed) {
+        this.precompressed = precompressed;
+        return this;
+    }
+
+    public StaticFileOptions welcomeFiles(String... welcomeFiles) {
+        this.welcomeFiles = welcomeFiles;
+        return this;
+    }
+}
@@ -0,0 +1,44 @@
+package com.clianz.spur;
+
+import com.clianz.spur.helpers.WebSocketOnBinaryChunk;
+import com.clianz.spur.helpers.WebSocketOnBinaryMessage;
+
+/**
+ * Per-path websocket settings, passed when registering a websocket.
+ */
+public class WebSocketOptions {
+
+    protected long maxMessageSize = -1;
+    protected WebSocketOnBinaryMessage onBinaryMessage;
+    protected WebSocketOnBinaryChunk onBinaryChunk;
+
+    public WebSocketOptions() {
+    }
+
+    /**
+     * Largest inbound message, text or binary, in bytes. Connections sending more are closed. Unlimited by default.
+     */
+    public WebSocketOptions maxMessageSize(long maxMessageSize) {
+        this.maxMessageSize = maxMessageSize;
+        return this;
+    }
+
+    /**
+     * Receives each binary message once it has fully arrived, in the pooled buffers it was read into.
+     */
+    public WebSocketOptions onBinaryMessage(WebSocketOnBinaryMessage onBinaryMessage) {
+        this.onBinaryMessage = onBinaryMessage;
+        this.onBinaryChunk = null;
+        return this;
+    }
+
+    /**
+     * Receives binary messages chunk by chunk as they arrive, without buffering the whole message. Use for large or
+     * fragmented messages.
+     */
+    public WebSocketOptions onBinaryChunk(WebSocketOnBinaryChunk onBinaryChunk) {
+        this.onBinaryChunk = onBinaryChunk;
+        this.onBinaryMessage = null;
+        return this;
+    }
+}
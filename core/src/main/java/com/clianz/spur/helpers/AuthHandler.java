@@ -0,0 +1,179 @@
+package com.clianz.spur.helpers;
+
+import java.net.InetAddress;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jboss.logging.Logger;
+
+import io.undertow.server.Connectors;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+
+/**
+ * Lets a request through if one of the {@link Authenticator}s for its Authorization scheme accepts it, and answers 401 with a
+ * challenge per scheme otherwise. The principal is attached to the exchange under {@link #PRINCIPAL}.
+ * <p>
+ * Accepted headers are served from a {@link CredentialCache} on the IO thread. On a cache miss only the verification runs on a
+ * worker thread, as hashing a password or checking a signature is too slow for the IO thread; the request then carries on
+ * from the IO thread. Rejected headers are remembered briefly too, and each client address may only have a few verifications
+ * running at once.
+ */
+public class AuthHandler implements HttpHandler {
+
+    public static final AttachmentKey<Object> PRINCIPAL = AttachmentKey.create(Object.class);
+
+    /**
+     * Query parameter a websocket upgrade may carry a Bearer token in, since browsers can not set headers on one.
+     */
+    public static final String ACCESS_TOKEN_PARAM = "access_token";
+
+    public static final int DEFAULT_VERIFICATIONS_PER_CLIENT = 2;
+
+    private static final Logger LOGGER = Logger.getLogger(AuthHandler.class.getName());
+
+    private final HttpHandler next;
+    private final Authenticator[] authenticators;
+    private final CredentialCache cache;
+    private final boolean bearer;
+    private final int maxVerificationsPerClient;
+    private final Map<InetAddress, Integer> verifying = new ConcurrentHashMap<>();
+
+    public AuthHandler(HttpHandler next, List<Authenticator> authenticators, CredentialCache cache) {
+        this(next, authenticators, cache, DEFAULT_VERIFICATIONS_PER_CLIENT);
+    }
+
+    /**
+     * @param maxVerificationsPerClient verifications one client address may have running at once; more get 429.
+     */
+    public AuthHandler(HttpHandler next, List<Authenticator> authenticators, CredentialCache cache, int maxVerificationsPerClient) {
+        this.next = next;
+        this.maxVerificationsPerClient = maxVerificationsPerClient;
+        this.authenticators = authenticators.toArray(new Authenticator[0]);
+        this.cache = cache;
+        this.bearer = authenticators.stream()
+                .anyMatch(authenticator -> BearerAuthenticator.SCHEME.equalsIgnoreCase(authenticator.getScheme()));
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        String authorization = exchange.getRequestHeaders()
+                .getFirst(Headers.AUTHORIZATION);
+        if (authorization == null && bearer) {
+            authorization = webSocketToken(exchange);
+        }
+        if (authorization == null) {
+            reject(exchange);
+            return;
+        }
+        Object principal = cache.get(authorization);
+        if (principal == CredentialCache.REJECTED) {
+            reject(exchange);
+            return;
+        } else if (principal != null) {
+            proceed(exchange, principal);
+            return;
+        }
+        InetAddress client = exchange.getSourceAddress()
+                .getAddress();
+        if (!startVerifying(client)) {
+            exchange.setStatusCode(StatusCodes.TOO_MANY_REQUESTS)
+                    .endExchange();
+            return;
+        }
+        // Only verification leaves the IO thread; the rest of the chain resumes there, so execution modes and IO-thread-only
+        // handlers (e.g. SSE) behave as they do for cached credentials.
+        String credentials = authorization;
+        exchange.dispatch(exchange.getConnection()
+                .getWorker(), () -> {
+                    Object verified;
+                    try {
+                        verified = verify(credentials);
+                    } finally {
+                        stopVerifying(client);
+                    }
+                    if (verified != null) {
+                        cache.put(credentials, verified);
+                    } else {
+                        cache.reject(credentials);
+                    }
+                    exchange.getIoThread()
+                            .execute(() -> Connectors.executeRootHandler(resumed -> {
+                                if (verified == null) {
+                                    reject(resumed);
+                                } else {
+                                    proceed(resumed, verified);
+                                }
+                            }, exchange));
+                });
+    }
+
+    /**
+     * Caps the verifications in flight per client address, so one client sending bad credentials can not keep every worker
+     * busy hashing passwords.
+     */
+    private boolean startVerifying(InetAddress client) {
+        if (verifying.merge(client, 1, Integer::sum) <= maxVerificationsPerClient) {
+            return true;
+        }
+        stopVerifying(client);
+        return false;
+    }
+
+    private void stopVerifying(InetAddress client) {
+        verifying.computeIfPresent(client, (address, count) -> count == 1 ? null : count - 1);
+    }
+
+    private void proceed(HttpServerExchange exchange, Object principal) throws Exception {
+        exchange.putAttachment(PRINCIPAL, principal);
+        next.handleRequest(exchange);
+    }
+
+    private Object verify(String authorization) {
+        int separator = authorization.indexOf(' ');
+        if (separator < 0) {
+            return null;
+        }
+        String scheme = authorization.substring(0, separator);
+        String credentials = authorization.substring(separator + 1);
+        for (Authenticator authenticator : authenticators) {
+            if (!scheme.equalsIgnoreCase(authenticator.getScheme())) {
+                continue;
+            }
+            try {
+                Object principal = authenticator.authenticate(credentials);
+                if (principal != null) {
+                    return principal;
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Authenticator for " + scheme + " failed: " + e.getMessage(), e);
+            }
+        }
+        return null;
+    }
+
+    private static String webSocketToken(HttpServerExchange exchange) {
+        if (!"websocket".equalsIgnoreCase(exchange.getRequestHeaders()
+                .getFirst(Headers.UPGRADE))) {
+            return null;
+        }
+        Deque<String> token = exchange.getQueryParameters()
+                .get(ACCESS_TOKEN_PARAM);
+        return token == null || token.isEmpty() ? null : BearerAuthenticator.SCHEME + " " + token.getFirst();
+    }
+
+    private void reject(HttpServerExchange exchange) {
+        HeaderMap responseHeaders = exchange.getResponseHeaders();
+        for (Authenticator authenticator : authenticators) {
+            responseHeaders.add(Headers.WWW_AUTHENTICATE, authenticator.getChallenge());
+        }
+        exchange.setStatusCode(StatusCodes.UNAUTHORIZED)
+                .endExchange();
+    }
+}
@@ -0,0 +1,26 @@
+package com.clianz.spur.helpers;
+
+/**
+ * Verifies the credentials of one Authorization scheme, e.g. "Basic" or "Bearer". Verification may be slow (password hashing,
+ * signature checks), so it runs on a worker thread, and accepted credentials are cached by {@link AuthHandler}.
+ */
+public interface Authenticator {
+
+    /**
+     * @return the scheme name, matched case-insensitively against the Authorization header.
+     */
+    String getScheme();
+
+    /**
+     * @param credentials the Authorization header value after the scheme name.
+     * @return the principal (e.g. a user name or token claims), or null to reject the credentials.
+     */
+    Object authenticate(String credentials) throws Exception;
+
+    /**
+     * @return the WWW-Authenticate challenge sent with a 401.
+     */
+    default String getChallenge() {
+        return getScheme() + " realm=\"realm\"";
+    }
+}
@@ -1,50 +1,17 @@
 package com.clianz.spur.helpers;
 
-import java.util.Base64;
-import java.util.logging.Logger;
+import java.util.Collections;
 
-import io.undertow.Handlers;
 import io.undertow.server.HttpHandler;
-import io.undertow.server.HttpServerExchange;
-import io.undertow.util.HttpString;
-import io.undertow.util.StatusCodes;
 
-public class BasicAuthHandler implements HttpHandler {
-    private static final Logger LOGGER = Logger.getLogger(BasicAuthHandler.class.getName());
-    private HttpHandler authChecker;
-    private final String expectedCredential;
+/**
+ * @deprecated use {@link AuthHandler} with a {@link BasicAuthenticator}, which supports several users and other schemes.
+ */
+@Deprecated
+public class BasicAuthHandler extends AuthHandler {
 
     public BasicAuthHandler(HttpHandler next, String expectedUsername, String expectedPassword) {
-        this.expectedCredential = "Basic " + Base64.getEncoder()
-                .encodeToString((expectedUsername + ":" + expectedPassword).getBytes());
-        this.authChecker = Handlers.predicate(exchange -> {
-            String userCredential = getRequestHeader(exchange, new HttpString("Authorization"));
-            if (userCredential == null) {
-                return false;
-            } else if (expectedCredential.equals(userCredential)) {
-                return true;
-            }
-            return false;
-        }, next, exchange -> {
-            exchange.getResponseHeaders()
-                    .put(new HttpString("WWW-Authenticate"), "Basic realm=\"realm\"");
-            exchange.setStatusCode(StatusCodes.UNAUTHORIZED)
-                    .endExchange();
-        });
-    }
-
-    @Override
-    public void handleRequest(HttpServerExchange httpServerExchange) throws Exception {
-        authChecker.handleRequest(httpServerExchange);
-    }
-
-    private static String getRequestHeader(HttpServerExchange exchange, HttpString headerName) {
-        if (exchange.getRequestHeaders()
-                .contains(headerName)) {
-            return exchange.getRequestHeaders()
-                    .get(headerName)
-                    .getFirst();
-        }
-        return null;
+        super(next, Collections.singletonList(new BasicAuthenticator().user(expectedUsername, expectedPassword)),
+                new CredentialCache(60_000L, 10_000));
     }
 }
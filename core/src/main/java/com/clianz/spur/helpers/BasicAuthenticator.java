@@ -0,0 +1,133 @@
+package com.clianz.spur.helpers;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Basic auth against a set of users whose passwords are only kept as salted PBKDF2 hashes. Hashes look like
+ * "pbkdf2-sha256$iterations$salt$hash" and can be made ahead of time with {@link #hash(String)}, so no plain password needs to
+ * be in config.
+ */
+public class BasicAuthenticator implements Authenticator {
+
+    public static final String SCHEME = "Basic";
+    public static final int DEFAULT_ITERATIONS = 310_000;
+
+    private static final String PREFIX = "pbkdf2-sha256";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final Map<String, PasswordHash> users = new ConcurrentHashMap<>();
+    // Checked for unknown users too, so a miss takes as long as a wrong password.
+    private volatile PasswordHash decoy;
+
+    /**
+     * Adds a user, hashing the password now.
+     */
+    public BasicAuthenticator user(String username, String password) {
+        return hashedUser(username, hash(password));
+    }
+
+    /**
+     * Adds a user with a password hash from {@link #hash(String)}.
+     */
+    public BasicAuthenticator hashedUser(String username, String passwordHash) {
+        PasswordHash hash = PasswordHash.parse(passwordHash);
+        users.put(username, hash);
+        if (decoy == null) {
+            decoy = hash;
+        }
+        return this;
+    }
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
+    /**
+     * @return the user name, or null if the user is unknown or the password is wrong.
+     */
+    @Override
+    public Object authenticate(String credentials) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getDecoder()
+                    .decode(credentials.trim()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        int separator = decoded.indexOf(':');
+        if (separator < 0) {
+            return null;
+        }
+        String username = decoded.substring(0, separator);
+        PasswordHash expected = users.get(username);
+        if (expected == null) {
+            if (decoy != null) {
+                decoy.matches(decoded.substring(separator + 1));
+            }
+            return null;
+        }
+        return expected.matches(decoded.substring(separator + 1)) ? username : null;
+    }
+
+    public static String hash(String password) {
+        return hash(password, DEFAULT_ITERATIONS);
+    }
+
+    public static String hash(String password, int iterations) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder encoder = Base64.getEncoder();
+        return PREFIX + "$" + iterations + "$" + encoder.encodeToString(salt) + "$"
+                + encoder.encodeToString(derive(password, salt, iterations));
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM)
+                    .generateSecret(spec)
+                    .getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Can not hash password", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static class PasswordHash {
+        private final int iterations;
+        private final byte[] salt;
+        private final byte[] hash;
+
+        private PasswordHash(int iterations, byte[] salt, byte[] hash) {
+            this.iterations = iterations;
+            this.salt = salt;
+            this.hash = hash;
+        }
+
+        private static PasswordHash parse(String passwordHash) {
+            String[] parts = passwordHash.split("\\$");
+            if (parts.length != 4 || !PREFIX.equals(parts[0])) {
+                throw new IllegalArgumentException("Not a " + PREFIX + " password hash");
+            }
+            Base64.Decoder decoder = Base64.getDecoder();
+            return new PasswordHash(Integer.parseInt(parts[1]), decoder.decode(parts[2]), decoder.decode(parts[3]));
+        }
+
+        private boolean matches(String password) {
+            return MessageDigest.isEqual(hash, derive(password, salt, iterations));
+        }
+    }
+}
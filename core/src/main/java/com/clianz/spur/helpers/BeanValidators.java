@@ -0,0 +1,43 @@
+package com.clianz.spur.helpers;
+
+import javax.validation.Configuration;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+
+import org.hibernate.validator.HibernateValidator;
+
+public class BeanValidators {
+
+    private static final Validator VALIDATOR = buildValidator(Validation.byDefaultProvider()
+            .configure());
+
+    private BeanValidators() {
+    }
+
+    /**
+     * Resolves the validator for a request body type once, up front.
+     *
+     * @return null when the type carries no constraints or validation is disabled, so callers can skip validation entirely.
+     */
+    public static Validator validatorFor(Class<?> bodyClassType, ValidationMode validationMode) {
+        if (bodyClassType == null || validationMode == ValidationMode.DISABLED || !VALIDATOR.getConstraintsForClass(bodyClassType)
+                .isBeanConstrained()) {
+            return null;
+        }
+        return validationMode == ValidationMode.FAIL_FAST ? FailFastHolder.VALIDATOR : VALIDATOR;
+    }
+
+    private static Validator buildValidator(Configuration<?> config) {
+        ValidatorFactory factory = config.buildValidatorFactory();
+        Validator validator = factory.getValidator();
+        factory.close();
+        return validator;
+    }
+
+    private static class FailFastHolder {
+        private static final Validator VALIDATOR = buildValidator(Validation.byProvider(HibernateValidator.class)
+                .configure()
+                .failFast(true));
+    }
+}
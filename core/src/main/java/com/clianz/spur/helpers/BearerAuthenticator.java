@@ -0,0 +1,34 @@
+package com.clianz.spur.helpers;
+
+/**
+ * Bearer tokens, e.g. JWTs, checked by a verifier from the JWT library of your choice. As accepted tokens are cached, keep the
+ * cache TTL below the lifetime of the tokens, or revocation and expiry will lag behind by up to the TTL.
+ */
+public class BearerAuthenticator implements Authenticator {
+
+    public static final String SCHEME = "Bearer";
+
+    private final TokenVerifier verifier;
+
+    public BearerAuthenticator(TokenVerifier verifier) {
+        this.verifier = verifier;
+    }
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
+    @Override
+    public Object authenticate(String credentials) throws Exception {
+        return verifier.verify(credentials.trim());
+    }
+
+    @FunctionalInterface
+    public interface TokenVerifier {
+        /**
+         * @return the principal (e.g. the token's claims), or null if the token is invalid or expired.
+         */
+        Object verify(String token) throws Exception;
+    }
+}
@@ -0,0 +1,16 @@
+package com.clianz.spur.helpers;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Handles a request body piece by piece as it is read off the connection, on the IO thread. The chunk buffer is pooled and only
+ * valid until this method returns. The final call has last set and an empty chunk.
+ * <p>
+ * Returning null keeps reading straight away. Returning a stage stops reading until it completes, and TCP flow control holds the
+ * client back meanwhile.
+ */
+@FunctionalInterface
+public interface BodyChunkConsumer {
+    CompletionStage<?> onChunk(ByteBuffer chunk, boolean last) throws Exception;
+}
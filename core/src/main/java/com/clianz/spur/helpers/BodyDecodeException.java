@@ -0,0 +1,15 @@
+package com.clianz.spur.helpers;
+
+/**
+ * A streamed request body that could not be decoded or failed validation. Async routes answer it with a 400 by default.
+ */
+public class BodyDecodeException extends RuntimeException {
+
+    public BodyDecodeException(String message) {
+        super(message);
+    }
+
+    public BodyDecodeException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,60 @@
+package com.clianz.spur.helpers;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.boon.json.JsonFactory;
+import org.boon.json.JsonParserFactory;
+import org.boon.json.ObjectMapper;
+import org.boon.primitive.CharBuf;
+
+/**
+ * Default {@link JsonCodec} backed by Boon. Boon's mapper creates a fresh parser/serializer per call from immutable factories,
+ * so one shared instance is safe to use from any thread without a ThreadLocal.
+ * <p>
+ * When the parser factory is known, bodies are parsed with Boon's UTF-8 byte parser. The mapper's own byte[] entry point
+ * decodes the whole body to chars first, which allocates about as much as building a String.
+ */
+public class BoonJsonCodec implements JsonCodec {
+
+    private final ObjectMapper objectMapper;
+    private final JsonParserFactory parserFactory;
+
+    public BoonJsonCodec() {
+        // The same parser settings JsonFactory.createUseJSONDates() uses.
+        this(JsonFactory.createUseJSONDates(), new JsonParserFactory());
+    }
+
+    public BoonJsonCodec(ObjectMapper objectMapper) {
+        this(objectMapper, null);
+    }
+
+    /**
+     * @param parserFactory the factory the mapper parses with, or null to parse through the mapper.
+     */
+    public BoonJsonCodec(ObjectMapper objectMapper, JsonParserFactory parserFactory) {
+        this.objectMapper = objectMapper;
+        this.parserFactory = parserFactory;
+    }
+
+    @Override
+    public <T> Decoder<T> decoder(Class<T> type) {
+        if (parserFactory == null) {
+            return json -> objectMapper.readValue(json, type);
+        }
+        return json -> parserFactory.createUTF8DirectByteParser()
+                .parse(type, json);
+    }
+
+    @Override
+    public String toJson(Object obj) {
+        return objectMapper.toJson(obj);
+    }
+
+    @Override
+    public void writeJson(Object obj, Writer writer) throws IOException {
+        CharBuf charBuf = objectMapper.serializer()
+                .serialize(obj);
+        writer.write(charBuf.toCharArray(), 0, charBuf.len());
+    }
+}
@@ -0,0 +1,266 @@
+package com.clianz.spur.helpers;
+
+import java.lang.reflect.Method;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Runs tasks on a delegate executor with at most maxConcurrent in flight. Tasks over the limit wait in a FIFO queue of up to
+ * maxQueued entries; beyond that they are rejected so the caller can shed load.
+ * <p>
+ * {@link #shutdown()} stops the delegate's threads, and executors from {@link #threadPool} or {@link #virtualThreads} make
+ * a fresh delegate on {@link #resume()}. Tasks submitted in between are rejected, and queued tasks that never get to run are
+ * dropped, each with its own drop action so the caller can still answer the request it carries.
+ */
+public class BoundedExecutor implements Executor {
+
+    private static final Logger LOGGER = Logger.getLogger(BoundedExecutor.class.getName());
+
+    private final String name;
+    private final Supplier<Executor> delegateFactory;
+    private volatile Executor delegate;
+    private final int maxConcurrent;
+    private final int maxQueued;
+
+    private final Queue<Task> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder queuedTotal = new LongAdder();
+
+    /**
+     * @param delegate runs the tasks; shut down by {@link #shutdown()} if it is an ExecutorService, and reused by
+     *         {@link #resume()}.
+     */
+    public BoundedExecutor(String name, Executor delegate, int maxConcurrent, int maxQueued) {
+        this(name, () -> delegate, maxConcurrent, maxQueued);
+    }
+
+    private BoundedExecutor(String name, Supplier<Executor> delegateFactory, int maxConcurrent, int maxQueued) {
+        if (maxConcurrent < 1 || maxQueued < 0) {
+            throw new IllegalArgumentException("Executor " + name + " needs maxConcurrent > 0 and maxQueued >= 0");
+        }
+        this.name = name;
+        this.delegateFactory = delegateFactory;
+        this.delegate = delegateFactory.get();
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * Creates an executor backed by its own pool of daemon threads, one per allowed concurrent task.
+     */
+    public static BoundedExecutor threadPool(String name, int threads, int maxQueued) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "spur-" + name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new BoundedExecutor(name, () -> Executors.newFixedThreadPool(threads, threadFactory), threads, maxQueued);
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread per task.
+     *
+     * @throws IllegalStateException when the running JVM has no virtual threads (before Java 21).
+     */
+    public static BoundedExecutor virtualThreads(String name, int maxConcurrent, int maxQueued) {
+        Method factory;
+        try {
+            factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Virtual thread execution requires Java 21 or later", e);
+        }
+        return new BoundedExecutor(name, () -> {
+            try {
+                return (Executor) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Can not create virtual thread executor", e);
+            }
+        }, maxConcurrent, maxQueued);
+    }
+
+    /**
+     * Stops the delegate's threads once the tasks already running finish, and drops the queued ones, running their drop
+     * actions on the calling thread.
+     */
+    public synchronized void shutdown() {
+        Executor stopped = delegate;
+        if (stopped == null) {
+            return;
+        }
+        delegate = null;
+        if (stopped instanceof ExecutorService) {
+            ((ExecutorService) stopped).shutdown();
+        }
+        Task task;
+        while ((task = queue.poll()) != null) {
+            queued.decrementAndGet();
+            rejected.increment();
+            drop(task);
+        }
+    }
+
+    public synchronized void resume() {
+        if (delegate == null) {
+            delegate = delegateFactory.get();
+        }
+    }
+
+    /**
+     * @return false if the task was rejected because both the concurrency limit and the queue are full.
+     */
+    public boolean tryExecute(Runnable task) {
+        return tryExecute(task, null);
+    }
+
+    /**
+     * @param onDropped
+     *         runs instead of the task if it was queued and then dropped because the executor shut down.
+     * @return false if the task was rejected because both the concurrency limit and the queue are full.
+     */
+    public boolean tryExecute(Runnable task, Runnable onDropped) {
+        if (delegate == null) {
+            rejected.increment();
+            return false;
+        }
+        if (tryAcquire()) {
+            return start(task);
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+        queuedTotal.increment();
+        queue.offer(new Task(task, onDropped));
+        // A running task may have finished while this one was being queued.
+        drain();
+        return true;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!tryExecute(task)) {
+            throw new RejectedExecutionException("Executor " + name + " is saturated");
+        }
+    }
+
+    private void run(Runnable task) {
+        try {
+            task.run();
+        } finally {
+            completed.increment();
+            active.decrementAndGet();
+            drain();
+        }
+    }
+
+    private void drain() {
+        while (!queue.isEmpty() && tryAcquire()) {
+            Task next = queue.poll();
+            if (next == null) {
+                active.decrementAndGet();
+            } else {
+                queued.decrementAndGet();
+                if (!start(next.task)) {
+                    drop(next);
+                }
+            }
+        }
+    }
+
+    private boolean start(Runnable task) {
+        Executor executor = delegate;
+        try {
+            if (executor != null) {
+                executor.execute(() -> run(task));
+                return true;
+            }
+        } catch (RejectedExecutionException e) {
+            // Shut down since the check.
+        }
+        active.decrementAndGet();
+        rejected.increment();
+        return false;
+    }
+
+    private void drop(Task task) {
+        if (task.onDropped == null) {
+            return;
+        }
+        try {
+            task.onDropped.run();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Drop action of a task queued on executor " + name + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    private boolean tryAcquire() {
+        int current;
+        do {
+            current = active.get();
+            if (current >= maxConcurrent) {
+                return false;
+            }
+        } while (!active.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    /**
+     * @return number of tasks that had to wait in the queue since start.
+     */
+    public long getQueuedTotal() {
+        return queuedTotal.sum();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    private static class Task {
+        private final Runnable task;
+        private final Runnable onDropped;
+
+        private Task(Runnable task, Runnable onDropped) {
+            this.task = task;
+            this.onDropped = onDropped;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.clianz.spur.helpers;
+
+/**
+ * Outcome of one broadcast, available once every send it started has completed or failed.
+ */
+public class BroadcastResult {
+
+    private final int delivered;
+    private final int failed;
+
+    public BroadcastResult(int delivered, int failed) {
+        this.delivered = delivered;
+        this.failed = failed;
+    }
+
+    /**
+     * @return number of connections the message was sent to.
+     */
+    public int getRecipients() {
+        return delivered + failed;
+    }
+
+    /**
+     * @return number of connections the message was fully written to.
+     */
+    public int getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * @return number of connections the write failed on, usually because they were closing.
+     */
+    public int getFailed() {
+        return failed;
+    }
+
+    @Override
+    public String toString() {
+        return "BroadcastResult{delivered=" + delivered + ", failed=" + failed + '}';
+    }
+}
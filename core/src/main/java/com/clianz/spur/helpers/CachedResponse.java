@@ -0,0 +1,158 @@
+package com.clianz.spur.helpers;
+
+import static com.clianz.spur.helpers.HttpMethods.HEAD;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.StatusCodes;
+
+/**
+ * A serialized 200 response held by a {@link ResponseCache}: the headers the handler set, the body, and a gzip variant when
+ * compression is enabled and the body is large enough. Bodies are read-only and shared by every request served from them.
+ */
+public class CachedResponse {
+
+    private final HttpString[] headerNames;
+    private final String[] headerValues;
+    private final ByteBuffer body;
+    private final ByteBuffer gzipBody;
+    private final String etag;
+    private final String gzipEtag;
+    private final String vary;
+    private final long expiresAtNanos;
+    private final long size;
+
+    private CachedResponse(HttpString[] headerNames, String[] headerValues, ByteBuffer body, ByteBuffer gzipBody, String etag,
+            String vary, long expiresAtNanos) {
+        this.headerNames = headerNames;
+        this.headerValues = headerValues;
+        this.body = body;
+        this.gzipBody = gzipBody;
+        this.etag = etag != null ? etag : ETags.strong(body);
+        // A strong tag identifies exact bytes, so the gzip variant needs its own; a weak one covers both.
+        this.gzipEtag = gzipBody == null || ETags.isWeak(this.etag) ? this.etag
+                : this.etag.substring(0, this.etag.length() - 1) + "-gzip\"";
+        if (gzipBody != null) {
+            vary = vary.isEmpty() ? Headers.ACCEPT_ENCODING_STRING : vary + ", " + Headers.ACCEPT_ENCODING_STRING;
+        }
+        this.vary = vary;
+        this.expiresAtNanos = expiresAtNanos;
+        long headerBytes = 0;
+        for (int i = 0; i < headerNames.length; i++) {
+            headerBytes += headerNames[i].length() + headerValues[i].length() + 32;
+        }
+        this.size = body.capacity() + (gzipBody == null ? 0 : gzipBody.capacity()) + headerBytes + 128;
+    }
+
+    /**
+     * Captures the response the handler is about to send.
+     *
+     * @param headersBefore
+     *         response headers already present before the handler ran (e.g. CORS), which are not cached.
+     * @param vary
+     *         request headers the route varies on, for the Vary header.
+     * @param compression
+     *         decides whether the body also gets a gzip variant; null for none.
+     */
+    static CachedResponse of(HttpServerExchange exchange, Collection<HttpString> headersBefore, byte[] body, String vary,
+            long ttlNanos, Compression compression, boolean offHeap) {
+        HeaderMap responseHeaders = exchange.getResponseHeaders();
+        List<HttpString> names = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        for (HeaderValues header : responseHeaders) {
+            HttpString name = header.getHeaderName();
+            if (headersBefore.contains(name) || isHopOrComputed(name)) {
+                continue;
+            }
+            for (String value : header) {
+                names.add(name);
+                values.add(value);
+            }
+        }
+        ByteBuffer gzipBody = null;
+        if (compression != null && !responseHeaders.contains(Headers.CONTENT_ENCODING) && compression.shouldPrecompress(body.length,
+                responseHeaders.getFirst(Headers.CONTENT_TYPE))) {
+            byte[] compressed = compression.gzip(body);
+            if (compressed.length < body.length) {
+                gzipBody = store(compressed, offHeap);
+            }
+        }
+        return new CachedResponse(names.toArray(new HttpString[0]), values.toArray(new String[0]), store(body, offHeap), gzipBody,
+                responseHeaders.getFirst(Headers.ETAG), vary, System.nanoTime() + ttlNanos);
+    }
+
+    public boolean isExpired(long nowNanos) {
+        return nowNanos - expiresAtNanos >= 0;
+    }
+
+    /**
+     * @return approximate memory held, used for the cache's byte bound.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Sends this response, or a 304 when the request's validators match it.
+     */
+    public void send(HttpServerExchange exchange) {
+        boolean gzip = gzipBody != null && Compression.quality(exchange.getRequestHeaders()
+                .getFirst(Headers.ACCEPT_ENCODING), Compression.GZIP) > 0;
+        String tag = gzip ? gzipEtag : etag;
+        HeaderMap responseHeaders = exchange.getResponseHeaders();
+        for (int i = 0; i < headerNames.length; i++) {
+            // Replace what the handler already set on the first request; repeated names are consecutive.
+            if (i == 0 || !headerNames[i].equals(headerNames[i - 1])) {
+                responseHeaders.put(headerNames[i], headerValues[i]);
+            } else {
+                responseHeaders.add(headerNames[i], headerValues[i]);
+            }
+        }
+        responseHeaders.put(Headers.ETAG, tag);
+        if (!vary.isEmpty()) {
+            responseHeaders.add(Headers.VARY, vary);
+        }
+        exchange.setStatusCode(StatusCodes.OK);
+
+        if (ConditionalRequests.isNotModified(exchange)) {
+            ConditionalRequests.sendNotModified(exchange);
+            return;
+        }
+        if (gzip) {
+            responseHeaders.put(Headers.CONTENT_ENCODING, Compression.GZIP);
+        }
+        ByteBuffer data = (gzip ? gzipBody : body).duplicate();
+        responseHeaders.put(Headers.CONTENT_LENGTH, data.remaining());
+        if (exchange.getRequestMethod()
+                .equals(HEAD)) {
+            exchange.endExchange();
+            return;
+        }
+        exchange.getResponseSender()
+                .send(data);
+    }
+
+    private static boolean isHopOrComputed(HttpString name) {
+        return name.equals(Headers.CONTENT_LENGTH) || name.equals(Headers.DATE) || name.equals(Headers.CONNECTION)
+                || name.equals(Headers.TRANSFER_ENCODING) || name.equals(Headers.ETAG);
+    }
+
+    private static ByteBuffer store(byte[] bytes, boolean offHeap) {
+        ByteBuffer buffer = offHeap ? ByteBuffer.allocateDirect(bytes.length) : ByteBuffer.allocate(bytes.length);
+        buffer.put(bytes)
+                .flip();
+        return buffer.asReadOnlyBuffer();
+    }
+}
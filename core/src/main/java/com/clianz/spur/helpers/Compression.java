@@ -0,0 +1,197 @@
+package com.clianz.spur.helpers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.encoding.ContentEncodingProvider;
+import io.undertow.server.handlers.encoding.ContentEncodingRepository;
+import io.undertow.server.handlers.encoding.EncodingHandler;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.Headers;
+
+/**
+ * Response compression, resolved once at start: the codecs negotiated against Accept-Encoding, the minimum body size, and the
+ * content types worth compressing. A route can switch compression on or off for itself through {@link #ROUTE_POLICY}.
+ */
+public class Compression {
+
+    /**
+     * Set by a route to override whether its responses are compressed.
+     */
+    public static final AttachmentKey<Boolean> ROUTE_POLICY = AttachmentKey.create(Boolean.class);
+
+    /**
+     * Content type prefixes compressed by default. Images, video and archives are already compressed.
+     */
+    public static final String[] DEFAULT_TYPES = { "text/", "application/json", "application/x-ndjson", "application/javascript",
+            "application/xml", "application/xhtml+xml", "image/svg+xml" };
+
+    public static final String GZIP = "gzip";
+
+    private final boolean enabled;
+    private final long minSize;
+    private final String[] types;
+    private final Map<String, ContentEncodingProvider> codecs;
+    private final int gzipLevel;
+
+    /**
+     * @param enabled whether routes without their own policy are compressed.
+     * @param codecs codecs by content-coding name, most preferred first.
+     * @param gzipLevel level for gzip variants built up front (e.g. by the response cache), or -1 for the default.
+     */
+    public Compression(boolean enabled, long minSize, String[] types, Map<String, ContentEncodingProvider> codecs, int gzipLevel) {
+        this.enabled = enabled;
+        this.minSize = minSize;
+        this.types = types.clone();
+        this.codecs = codecs;
+        this.gzipLevel = gzipLevel;
+    }
+
+    /**
+     * Wraps the handler chain so responses are compressed on the fly with the best codec the client accepts. Responses that
+     * already have a Content-Encoding are left alone.
+     */
+    public HttpHandler wrap(HttpHandler next) {
+        ContentEncodingRepository repository = new ContentEncodingRepository();
+        int priority = codecs.size() * 10;
+        for (Map.Entry<String, ContentEncodingProvider> codec : codecs.entrySet()) {
+            repository.addEncodingHandler(codec.getKey(), codec.getValue(), priority, this::shouldCompress);
+            priority -= 10;
+        }
+        return new EncodingHandler(repository).setNext(next);
+    }
+
+    /**
+     * Checked once the response headers are final. A response without Content-Length (chunked) counts as large.
+     */
+    public boolean shouldCompress(HttpServerExchange exchange) {
+        Boolean routePolicy = exchange.getAttachment(ROUTE_POLICY);
+        if (routePolicy != null ? !routePolicy : !enabled) {
+            return false;
+        }
+        HeaderMap responseHeaders = exchange.getResponseHeaders();
+        String contentLength = responseHeaders.getFirst(Headers.CONTENT_LENGTH);
+        if (contentLength != null && Long.parseLong(contentLength) < minSize) {
+            return false;
+        }
+        return isCompressible(responseHeaders.getFirst(Headers.CONTENT_TYPE));
+    }
+
+    /**
+     * @return true if a body of this size and type should get a compressed variant when stored ahead of time.
+     */
+    public boolean shouldPrecompress(long size, String contentType) {
+        return codecs.containsKey(GZIP) && size >= minSize && isCompressible(contentType);
+    }
+
+    /**
+     * @return true if the content type starts with one of the allowed prefixes, or is missing (e.g. a plain String response).
+     */
+    public boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return true;
+        }
+        for (String type : types) {
+            if (contentType.regionMatches(true, 0, type, 0, type.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public byte[] gzip(byte[] body) {
+        return gzip(body, gzipLevel);
+    }
+
+    public static byte[] gzip(byte[] body, int level) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2 + 64);
+        try (GZIPOutputStream gzip = new LeveledGzipOutputStream(out, level)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not gzip response", e);
+        }
+        return out.toByteArray();
+    }
+
+    public static byte[] deflate(byte[] body, int level) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(body);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @return the q-value the Accept-Encoding header gives the coding (or *), 0 if it is refused, or -1 if it is not listed.
+     */
+    public static float quality(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) {
+            return -1;
+        }
+        float wildcard = -1;
+        for (String entry : acceptEncoding.split(",")) {
+            int params = entry.indexOf(';');
+            String name = (params < 0 ? entry : entry.substring(0, params)).trim();
+            boolean exact = name.equalsIgnoreCase(coding);
+            if (exact || name.equals("*")) {
+                float q = params < 0 ? 1 : parseQuality(entry.substring(params + 1));
+                if (exact) {
+                    return q;
+                }
+                wildcard = q;
+            }
+        }
+        return wildcard;
+    }
+
+    /**
+     * @return the coding the client accepts with the highest q-value, earlier ones winning ties; null if none is acceptable.
+     */
+    public static String negotiate(String acceptEncoding, Iterable<String> codings) {
+        String best = null;
+        float bestQuality = 0;
+        for (String coding : codings) {
+            float q = quality(acceptEncoding, coding);
+            if (q > bestQuality) {
+                best = coding;
+                bestQuality = q;
+            }
+        }
+        return best;
+    }
+
+    private static float parseQuality(String params) {
+        for (String param : params.split(";")) {
+            String trimmed = param.trim();
+            if (trimmed.startsWith("q=")) {
+                try {
+                    return Float.parseFloat(trimmed.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private static class LeveledGzipOutputStream extends GZIPOutputStream {
+        private LeveledGzipOutputStream(ByteArrayOutputStream out, int level) throws IOException {
+            super(out);
+            def.setLevel(level);
+        }
+    }
+}
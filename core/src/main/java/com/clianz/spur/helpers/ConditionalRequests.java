@@ -0,0 +1,57 @@
+package com.clianz.spur.helpers;
+
+import static com.clianz.spur.helpers.HttpMethods.GET;
+import static com.clianz.spur.helpers.HttpMethods.HEAD;
+
+import java.util.Date;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.DateUtils;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.StatusCodes;
+
+/**
+ * Evaluates If-None-Match and If-Modified-Since against the ETag and Last-Modified already set on a response. As in RFC 7232,
+ * If-None-Match wins when both are sent, and only successful GET and HEAD responses become 304s.
+ */
+public final class ConditionalRequests {
+
+    private ConditionalRequests() {
+    }
+
+    public static boolean isNotModified(HttpServerExchange exchange) {
+        HeaderMap requestHeaders = exchange.getRequestHeaders();
+        String ifNoneMatch = requestHeaders.getFirst(Headers.IF_NONE_MATCH);
+        String ifModifiedSince = ifNoneMatch == null ? requestHeaders.getFirst(Headers.IF_MODIFIED_SINCE) : null;
+        if (ifNoneMatch == null && ifModifiedSince == null) {
+            return false;
+        }
+        HttpString method = exchange.getRequestMethod();
+        if (exchange.getStatusCode() != StatusCodes.OK || !(method.equals(GET) || method.equals(HEAD))) {
+            return false;
+        }
+        HeaderMap responseHeaders = exchange.getResponseHeaders();
+        if (ifNoneMatch != null) {
+            return ETags.matches(ifNoneMatch, responseHeaders.getFirst(Headers.ETAG));
+        }
+        String lastModified = responseHeaders.getFirst(Headers.LAST_MODIFIED);
+        if (lastModified == null) {
+            return false;
+        }
+        Date since = DateUtils.parseDate(ifModifiedSince);
+        Date modified = DateUtils.parseDate(lastModified);
+        return since != null && modified != null && modified.getTime() <= since.getTime();
+    }
+
+    /**
+     * Ends the exchange with a 304, keeping the validators and other headers but no body.
+     */
+    public static void sendNotModified(HttpServerExchange exchange) {
+        exchange.setStatusCode(StatusCodes.NOT_MODIFIED);
+        exchange.getResponseHeaders()
+                .remove(Headers.CONTENT_LENGTH);
+        exchange.endExchange();
+    }
+}
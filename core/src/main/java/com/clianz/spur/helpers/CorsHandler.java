@@ -2,32 +2,32 @@ package com.clianz.spur.helpers;
 
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HeaderMap;
 import io.undertow.util.Headers;
-import io.undertow.util.HttpString;
 
+/**
+ * Echoes an allowed Origin back in Access-Control-Allow-Origin. Every response gets Vary: Origin, since whether that header
+ * is present depends on the request's origin and a shared cache must not hand one origin's response to another.
+ */
 public class CorsHandler implements HttpHandler {
 
-    private static final HttpString ACCESS_CONTROL_ALLOW_ORIGIN = new HttpString("Access-Control-Allow-Origin");
-    private HttpHandler next;
+    private final HttpHandler next;
+    private final CorsPolicy policy;
 
-    public CorsHandler(HttpHandler next) {
+    public CorsHandler(HttpHandler next, CorsPolicy policy) {
         this.next = next;
+        this.policy = policy;
     }
 
     @Override
     public void handleRequest(HttpServerExchange exchange) throws Exception {
-        exchange.getResponseHeaders()
-                .put(ACCESS_CONTROL_ALLOW_ORIGIN, getRequestHeader(exchange, Headers.ORIGIN));
-        this.next.handleRequest(exchange);
-    }
-
-    private static String getRequestHeader(HttpServerExchange exchange, HttpString headerName) {
-        if (exchange.getRequestHeaders()
-                .contains(headerName)) {
-            return exchange.getRequestHeaders()
-                    .get(headerName)
-                    .getFirst();
+        HeaderMap responseHeaders = exchange.getResponseHeaders();
+        responseHeaders.add(Headers.VARY, Headers.ORIGIN_STRING);
+        String origin = exchange.getRequestHeaders()
+                .getFirst(Headers.ORIGIN);
+        if (policy.isAllowed(origin)) {
+            responseHeaders.put(CorsPolicy.ACCESS_CONTROL_ALLOW_ORIGIN, origin);
         }
-        return null;
+        this.next.handleRequest(exchange);
     }
 }
@@ -0,0 +1,145 @@
+package com.clianz.spur.helpers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+
+/**
+ * The allowed CORS origins, compiled once at start. Exact origins are looked up in a hash set, and entries like
+ * "https://*.example.com" match any subdomain of example.com on that scheme (but not example.com itself). "*" allows every
+ * origin. Origins are compared as browsers send them: lower case, without a trailing slash.
+ * <p>
+ * Preflights allow the CORS-safelisted request headers unless other headers are configured. Echoing back whatever headers a
+ * preflight asks for has to be turned on explicitly.
+ */
+public class CorsPolicy {
+
+    public static final HttpString ACCESS_CONTROL_ALLOW_ORIGIN = new HttpString("Access-Control-Allow-Origin");
+    public static final HttpString ACCESS_CONTROL_ALLOW_METHODS = new HttpString("Access-Control-Allow-Methods");
+    public static final HttpString ACCESS_CONTROL_ALLOW_HEADERS = new HttpString("Access-Control-Allow-Headers");
+    public static final HttpString ACCESS_CONTROL_MAX_AGE = new HttpString("Access-Control-Max-Age");
+    public static final HttpString ACCESS_CONTROL_REQUEST_METHOD = new HttpString("Access-Control-Request-Method");
+    public static final HttpString ACCESS_CONTROL_REQUEST_HEADERS = new HttpString("Access-Control-Request-Headers");
+
+    /**
+     * The CORS-safelisted request headers. Content-Type is listed so non-form bodies such as JSON are allowed too.
+     */
+    public static final String SAFELISTED_HEADERS = "Accept, Accept-Language, Content-Language, Content-Type";
+
+    private static final String WILDCARD = "://*.";
+
+    private final boolean anyOrigin;
+    private final Set<String> origins = new HashSet<>();
+    private final String[] wildcardSchemes;
+    private final String[] wildcardSuffixes;
+    private final String maxAge;
+    private final String allowedHeaders;
+    private final boolean allowRequestedHeaders;
+
+    /**
+     * @param allowedOrigins origins, "*" or wildcard subdomain entries with a scheme; blank entries are ignored.
+     * @param maxAgeSeconds how long browsers may cache a preflight, or a negative value to leave it to the browser.
+     * @param allowedHeaders the Access-Control-Allow-Headers value, e.g. {@link #SAFELISTED_HEADERS}; empty sends none.
+     * @param allowRequestedHeaders echo whatever headers a preflight asks for instead of sending allowedHeaders.
+     * @throws IllegalArgumentException for a wildcard entry that is not of the form "scheme://*.domain".
+     */
+    public CorsPolicy(Collection<String> allowedOrigins, int maxAgeSeconds, String allowedHeaders, boolean allowRequestedHeaders) {
+        boolean any = false;
+        List<String> schemes = new ArrayList<>();
+        List<String> suffixes = new ArrayList<>();
+        for (String entry : allowedOrigins) {
+            String origin = entry.trim()
+                    .toLowerCase(Locale.ROOT);
+            int wildcard = origin.indexOf(WILDCARD);
+            if (origin.isEmpty()) {
+                continue;
+            } else if (origin.equals("*")) {
+                any = true;
+            } else if (origin.indexOf('*') >= 0) {
+                if (wildcard <= 0 || origin.indexOf('*') != wildcard + 3 || origin.lastIndexOf('*') != wildcard + 3
+                        || origin.length() == wildcard + WILDCARD.length()) {
+                    throw new IllegalArgumentException("CORS wildcard origins must look like https://*.example.com: " + entry);
+                }
+                schemes.add(origin.substring(0, wildcard + 3));
+                suffixes.add(origin.substring(wildcard + 4));
+            } else {
+                origins.add(origin);
+            }
+        }
+        this.anyOrigin = any;
+        this.wildcardSchemes = schemes.toArray(new String[0]);
+        this.wildcardSuffixes = suffixes.toArray(new String[0]);
+        this.maxAge = maxAgeSeconds < 0 ? null : String.valueOf(maxAgeSeconds);
+        this.allowedHeaders = allowedHeaders.trim()
+                .isEmpty() ? null : allowedHeaders.trim();
+        this.allowRequestedHeaders = allowRequestedHeaders;
+    }
+
+    /**
+     * @return false if no origin is allowed, in which case no CORS headers are sent at all.
+     */
+    public boolean isEnabled() {
+        return anyOrigin || !origins.isEmpty() || wildcardSuffixes.length > 0;
+    }
+
+    public boolean isAllowed(String origin) {
+        if (origin == null) {
+            return false;
+        }
+        if (anyOrigin || origins.contains(origin)) {
+            return true;
+        }
+        for (int i = 0; i < wildcardSuffixes.length; i++) {
+            if (matchesSubdomain(origin, wildcardSchemes[i], wildcardSuffixes[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the preflight headers that are the same for every route; the route adds its own Access-Control-Allow-Methods.
+     */
+    public void addPreflightHeaders(HttpServerExchange exchange) {
+        HeaderMap responseHeaders = exchange.getResponseHeaders();
+        if (maxAge != null) {
+            responseHeaders.put(ACCESS_CONTROL_MAX_AGE, maxAge);
+        }
+        if (!allowRequestedHeaders) {
+            if (allowedHeaders != null) {
+                responseHeaders.put(ACCESS_CONTROL_ALLOW_HEADERS, allowedHeaders);
+            }
+            return;
+        }
+        String requestedHeaders = exchange.getRequestHeaders()
+                .getFirst(ACCESS_CONTROL_REQUEST_HEADERS);
+        if (requestedHeaders != null) {
+            responseHeaders.put(ACCESS_CONTROL_ALLOW_HEADERS, requestedHeaders);
+        }
+        responseHeaders.add(Headers.VARY, ACCESS_CONTROL_REQUEST_HEADERS.toString());
+    }
+
+    private static boolean matchesSubdomain(String origin, String scheme, String suffix) {
+        int hostStart = scheme.length();
+        int hostEnd = origin.length() - suffix.length();
+        if (hostEnd <= hostStart || !origin.startsWith(scheme) || !origin.endsWith(suffix)) {
+            return false;
+        }
+        // The subdomain part must be a host name, not a port or path smuggled in front of the suffix.
+        for (int i = hostStart; i < hostEnd; i++) {
+            char c = origin.charAt(i);
+            if (c == '/' || c == ':' || c == '@') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,111 @@
+package com.clianz.spur.helpers;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers accepted Authorization headers for a while, so a credential is verified once per TTL instead of on every request.
+ * Entries are keyed by a SHA-256 digest of the header, so no password or token is kept on the heap. Once full, nothing new is
+ * cached until expired entries are purged.
+ * <p>
+ * Rejected headers are remembered too, briefly and in a table of their own, so a client repeating a bad credential does not
+ * cost a verification every time, and bad guesses can not crowd out accepted credentials.
+ */
+public class CredentialCache {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    /**
+     * Returned by {@link #get(String)} for a header rejected within the last few seconds.
+     */
+    public static final Object REJECTED = new Object();
+
+    private static final long REJECTED_TTL_NANOS = 5_000_000_000L;
+
+    private final long ttlNanos;
+    private final long rejectedTtlNanos;
+    private final int maxEntries;
+    private final Map<ByteBuffer, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<ByteBuffer, Entry> rejections = new ConcurrentHashMap<>();
+
+    /**
+     * @param ttlMillis how long an accepted credential is trusted without verifying it again; 0 disables caching.
+     */
+    public CredentialCache(long ttlMillis, int maxEntries) {
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.rejectedTtlNanos = Math.min(ttlNanos, REJECTED_TTL_NANOS);
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @return the cached principal, {@link #REJECTED}, or null if the header has not been verified recently.
+     */
+    public Object get(String authorization) {
+        if (ttlNanos <= 0) {
+            return null;
+        }
+        ByteBuffer key = digest(authorization);
+        Object principal = lookup(entries, key);
+        return principal != null ? principal : lookup(rejections, key);
+    }
+
+    public void put(String authorization, Object principal) {
+        store(entries, authorization, principal, ttlNanos);
+    }
+
+    public void reject(String authorization) {
+        store(rejections, authorization, REJECTED, rejectedTtlNanos);
+    }
+
+    private static Object lookup(Map<ByteBuffer, Entry> table, ByteBuffer key) {
+        Entry entry = table.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt - System.nanoTime() <= 0) {
+            table.remove(key, entry);
+            return null;
+        }
+        return entry.principal;
+    }
+
+    private void store(Map<ByteBuffer, Entry> table, String authorization, Object principal, long ttl) {
+        if (ttl <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (table.size() >= maxEntries) {
+            table.values()
+                    .removeIf(entry -> entry.expiresAt - now <= 0);
+            if (table.size() >= maxEntries) {
+                return;
+            }
+        }
+        table.put(digest(authorization), new Entry(principal, now + ttl));
+    }
+
+    private static ByteBuffer digest(String authorization) {
+        return ByteBuffer.wrap(SHA_256.get()
+                .digest(authorization.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static class Entry {
+        private final Object principal;
+        private final long expiresAt;
+
+        private Entry(Object principal, long expiresAt) {
+            this.principal = principal;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.clianz.spur.helpers;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Entity tag helpers: hashing a body into a strong tag and matching If-None-Match lists.
+ */
+public final class ETags {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ETags() {
+    }
+
+    /**
+     * @return a strong ETag (quoted) from a 64-bit FNV-1a hash and the length of the body.
+     */
+    public static String strong(ByteBuffer... body) {
+        long hash = FNV_OFFSET;
+        long length = 0;
+        for (ByteBuffer buffer : body) {
+            for (int i = buffer.position(); i < buffer.limit(); i++) {
+                hash ^= buffer.get(i) & 0xff;
+                hash *= FNV_PRIME;
+            }
+            length += buffer.remaining();
+        }
+        return "\"" + Long.toHexString(hash) + "-" + Long.toHexString(length) + "\"";
+    }
+
+    /**
+     * Quotes a tag supplied by a handler, unless it already is.
+     */
+    public static String quote(String tag, boolean weak) {
+        String quoted = tag.startsWith("\"") || tag.startsWith("W/\"") ? tag : "\"" + tag + "\"";
+        return weak && !quoted.startsWith("W/") ? "W/" + quoted : quoted;
+    }
+
+    public static boolean isWeak(String etag) {
+        return etag.startsWith("W/");
+    }
+
+    /**
+     * Weak comparison as used for If-None-Match: the W/ prefix is ignored on both sides, and "*" matches anything.
+     *
+     * @param ifNoneMatch
+     *         header value, possibly a comma separated list; may be null.
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        String opaqueTag = opaque(etag, 0, etag.length());
+        int start = 0;
+        while (start < ifNoneMatch.length()) {
+            int end = ifNoneMatch.indexOf(',', start);
+            if (end < 0) {
+                end = ifNoneMatch.length();
+            }
+            String candidate = opaque(ifNoneMatch, start, end);
+            if (candidate.equals("*") || candidate.equals(opaqueTag)) {
+                return true;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+
+    private static String opaque(String value, int start, int end) {
+        while (start < end && value.charAt(start) == ' ') {
+            start++;
+        }
+        while (end > start && value.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (value.startsWith("W/", start)) {
+            start += 2;
+        }
+        return value.substring(start, end);
+    }
+}
@@ -1,7 +1,10 @@
 package com.clianz.spur.helpers;
 
+import java.io.InputStream;
 import java.util.Objects;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
+import javax.validation.Validator;
 
 import com.clianz.spur.Req;
 import com.clianz.spur.Res;
@@ -14,6 +17,21 @@ public class Endpoint<T> {
     private HttpString method;
     private BiConsumer<Req, Res> reqResBiConsumer;
     private Class<T> bodyClassType;
+    private JsonCodec jsonCodec;
+    private JsonCodec.Decoder<T> bodyDecoder;
+    private Validator validator;
+    private ValidationMode validationMode;
+    private ExecutionMode executionMode;
+    private String executorName;
+    private BoundedExecutor executor;
+    private RequestMetrics metrics;
+    private ResponseCache responseCache;
+    private long cacheWaitNanos;
+    private int cacheMaxWaiters;
+    private Boolean autoEtag;
+    private Function<Req, String> versionToken;
+    private Long maxEntitySize;
+    private Boolean compress;
 
     public Endpoint(HttpString method, String path, BiConsumer<Req, Res> reqResBiConsumer, Class<T> bodyClassType) {
         this.method = method;
@@ -38,6 +56,153 @@ public class Endpoint<T> {
         return bodyClassType;
     }
 
+    public JsonCodec getJsonCodec() {
+        return jsonCodec;
+    }
+
+    public JsonCodec.Decoder<T> getBodyDecoder() {
+        return bodyDecoder;
+    }
+
+    /**
+     * @return validator for the body, or null when there is nothing to validate.
+     */
+    public Validator getValidator() {
+        return validator;
+    }
+
+    public ValidationMode getValidationMode() {
+        return validationMode;
+    }
+
+    public void setValidationMode(ValidationMode validationMode) {
+        this.validationMode = validationMode;
+        this.validator = BeanValidators.validatorFor(bodyClassType, validationMode);
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    public String getExecutorName() {
+        return executorName;
+    }
+
+    public void setExecutorName(String executorName) {
+        this.executorName = executorName;
+    }
+
+    /**
+     * @return executor the handler is dispatched to, or null when it runs on the IO or worker threads.
+     */
+    public BoundedExecutor getExecutor() {
+        return executor;
+    }
+
+    public void setExecutor(BoundedExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return metrics for this endpoint, or null when metrics are disabled.
+     */
+    public RequestMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(RequestMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return response cache for this GET endpoint, or null when responses are not cached.
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    public void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * @return how long a cache miss waits for a concurrent miss on the same key before running the handler itself.
+     */
+    public long getCacheWaitNanos() {
+        return cacheWaitNanos;
+    }
+
+    public void setCacheWaitNanos(long cacheWaitNanos) {
+        this.cacheWaitNanos = cacheWaitNanos;
+    }
+
+    /**
+     * @return how many cache misses may wait on one in-progress miss; the rest run the handler themselves.
+     */
+    public int getCacheMaxWaiters() {
+        return cacheMaxWaiters;
+    }
+
+    public void setCacheMaxWaiters(int cacheMaxWaiters) {
+        this.cacheMaxWaiters = cacheMaxWaiters;
+    }
+
+    /**
+     * @return whether responses get an ETag hashed from the body, or null to use the server default.
+     */
+    public Boolean getAutoEtag() {
+        return autoEtag;
+    }
+
+    public void setAutoEtag(Boolean autoEtag) {
+        this.autoEtag = autoEtag;
+    }
+
+    /**
+     * @return the route's version token supplier, or null when there is none.
+     */
+    public Function<Req, String> getVersionToken() {
+        return versionToken;
+    }
+
+    public void setVersionToken(Function<Req, String> versionToken) {
+        this.versionToken = versionToken;
+    }
+
+    /**
+     * @return the route's own body size limit, or null for the server default (no limit for streamed bodies).
+     */
+    public Long getMaxEntitySize() {
+        return maxEntitySize;
+    }
+
+    public void setMaxEntitySize(Long maxEntitySize) {
+        this.maxEntitySize = maxEntitySize;
+    }
+
+    /**
+     * @return whether this route's responses are compressed, or null for the server default.
+     */
+    public Boolean getCompress() {
+        return compress;
+    }
+
+    public void setCompress(Boolean compress) {
+        this.compress = compress;
+    }
+
+    public void setJsonCodec(JsonCodec jsonCodec) {
+        this.jsonCodec = jsonCodec;
+        if (bodyClassType != null && !bodyClassType.equals(Void.class) && !bodyClassType.equals(String.class)
+                && !bodyClassType.equals(InputStream.class)) {
+            this.bodyDecoder = jsonCodec.decoder(bodyClassType);
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o)
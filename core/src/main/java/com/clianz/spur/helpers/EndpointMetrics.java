@@ -0,0 +1,70 @@
+package com.clianz.spur.helpers;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Default {@link RequestMetrics}: striped counters and a latency histogram per status class (1xx-5xx), an in-flight gauge and
+ * a body parse time histogram.
+ */
+public class EndpointMetrics implements RequestMetrics {
+
+    private static final int STATUS_CLASSES = 5;
+
+    private final String method;
+    private final String path;
+    private final LongAdder inFlight = new LongAdder();
+    private final AtomicReferenceArray<LatencyHistogram> latencies = new AtomicReferenceArray<>(STATUS_CLASSES);
+    private final LatencyHistogram bodyParseLatency = new LatencyHistogram();
+
+    public EndpointMetrics(String method, String path) {
+        this.method = method;
+        this.path = path;
+    }
+
+    @Override
+    public void requestStarted() {
+        inFlight.increment();
+    }
+
+    @Override
+    public void requestCompleted(int statusCode, long durationNanos) {
+        inFlight.decrement();
+        int statusClass = Math.min(Math.max(statusCode / 100, 1), STATUS_CLASSES) - 1;
+        LatencyHistogram histogram = latencies.get(statusClass);
+        if (histogram == null) {
+            latencies.compareAndSet(statusClass, null, new LatencyHistogram());
+            histogram = latencies.get(statusClass);
+        }
+        histogram.recordNanos(durationNanos);
+    }
+
+    @Override
+    public void bodyParsed(long durationNanos) {
+        bodyParseLatency.recordNanos(durationNanos);
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    /**
+     * @param statusClass 1 for 1xx up to 5 for 5xx.
+     * @return latencies of completed requests in that class, or null if there were none.
+     */
+    public LatencyHistogram getLatency(int statusClass) {
+        return latencies.get(statusClass - 1);
+    }
+
+    public LatencyHistogram getBodyParseLatency() {
+        return bodyParseLatency;
+    }
+}
@@ -0,0 +1,12 @@
+package com.clianz.spur.helpers;
+
+public enum ExecutionMode {
+    /** Run the handler on the XNIO IO thread. Handlers must never block. */
+    IO_THREAD,
+    /** Dispatch the handler to Undertow's shared worker pool. */
+    WORKER,
+    /** Run each request on its own virtual thread (Java 21+), limited by the configured concurrency. */
+    VIRTUAL_THREAD,
+    /** Dispatch the handler to a named, bounded executor, isolating it from every other route. */
+    BULKHEAD
+}
@@ -0,0 +1,59 @@
+package com.clianz.spur.helpers;
+
+/**
+ * Count-min sketch of 4-bit counters estimating how often keys were requested recently, as used by TinyLFU. Counters are
+ * halved once the number of increments reaches ten times the table size, so old popularity fades. Not thread-safe; callers
+ * hold the cache lock.
+ */
+class FrequencySketch {
+
+    private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int expectedEntries) {
+        int length = Integer.highestOneBit(Math.max(expectedEntries, 16) - 1) << 1;
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = 10 * length;
+    }
+
+    void increment(int hash) {
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long spread = spread(hash, i);
+            int index = (int) (spread >>> 32) & tableMask;
+            int shift = ((int) spread & 15) << 2;
+            if (((table[index] >>> shift) & 0xfL) < 15) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions /= 2;
+        }
+    }
+
+    int frequency(int hash) {
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long spread = spread(hash, i);
+            int index = (int) (spread >>> 32) & tableMask;
+            int shift = ((int) spread & 15) << 2;
+            frequency = Math.min(frequency, (int) ((table[index] >>> shift) & 0xfL));
+        }
+        return frequency;
+    }
+
+    private static long spread(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        return h ^ (h >>> 29);
+    }
+}
@@ -0,0 +1,35 @@
+package com.clianz.spur.helpers;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+
+/**
+ * Interns header names given as Strings, so setting a header by name does not build a new {@link HttpString} (and hash it) on
+ * every request. Well-known names resolve to Undertow's own constants. The table is bounded, in case names come from input.
+ */
+public class HeaderNames {
+
+    private static final int MAX_CACHED = 1024;
+    private static final ConcurrentMap<String, HttpString> CACHE = new ConcurrentHashMap<>();
+
+    private HeaderNames() {
+    }
+
+    public static HttpString of(String name) {
+        HttpString headerName = CACHE.get(name);
+        if (headerName != null) {
+            return headerName;
+        }
+        headerName = Headers.fromCache(name);
+        if (headerName == null) {
+            headerName = new HttpString(name);
+        }
+        if (CACHE.size() < MAX_CACHED) {
+            CACHE.putIfAbsent(name, headerName);
+        }
+        return headerName;
+    }
+}
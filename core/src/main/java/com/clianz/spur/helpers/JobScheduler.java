@@ -0,0 +1,94 @@
+package com.clianz.spur.helpers;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The server's single scheduler for periodic jobs, backed by a small pool of daemon threads that is shut down with the server.
+ * Jobs scheduled before the server starts run straight away; jobs are kept across stop/resume and re-armed on resume.
+ */
+public class JobScheduler {
+
+    private final List<ScheduledJob> jobs = new CopyOnWriteArrayList<>();
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private final AtomicInteger jobCount = new AtomicInteger();
+    private int threads = 1;
+    private ScheduledThreadPoolExecutor executor;
+    private boolean stopped;
+    private MetricsRegistry metricsRegistry;
+
+    public synchronized ScheduledJob schedule(String name, long periodNanos, ScheduleMode mode, long initialDelayNanos,
+            long jitterNanos, boolean allowOverlap, Runnable task) {
+        String jobName = name != null ? name : "job-" + jobCount.incrementAndGet();
+        ScheduledJob job = new ScheduledJob(jobName, task, periodNanos, mode, jitterNanos, allowOverlap, this);
+        jobs.add(job);
+        if (metricsRegistry != null) {
+            metricsRegistry.registerScheduledJob(job);
+        }
+        if (!stopped) {
+            job.arm(executor(), initialDelayNanos);
+        }
+        return job;
+    }
+
+    /**
+     * Sets how many jobs can run at once. Defaults to 1.
+     */
+    public synchronized void setThreads(int threads) {
+        this.threads = threads;
+        if (executor != null) {
+            executor.setCorePoolSize(threads);
+        }
+    }
+
+    /**
+     * Registers the current jobs, and any scheduled later, with the registry.
+     */
+    public synchronized void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+        jobs.forEach(metricsRegistry::registerScheduledJob);
+    }
+
+    public List<ScheduledJob> getJobs() {
+        return jobs;
+    }
+
+    /**
+     * Stops the threads. Runs in progress finish; nothing new starts until {@link #resume()}.
+     */
+    public synchronized void shutdown() {
+        stopped = true;
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    public synchronized void resume() {
+        if (stopped) {
+            stopped = false;
+            jobs.forEach(job -> job.arm(executor(), 0));
+        }
+    }
+
+    void remove(ScheduledJob job) {
+        jobs.remove(job);
+    }
+
+    private ScheduledThreadPoolExecutor executor() {
+        if (executor == null) {
+            ThreadFactory threadFactory = runnable -> {
+                Thread thread = new Thread(runnable, "spur-scheduler-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            executor = new ScheduledThreadPoolExecutor(threads, threadFactory);
+            executor.setRemoveOnCancelPolicy(true);
+            executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        }
+        return executor;
+    }
+}
@@ -0,0 +1,30 @@
+package com.clianz.spur.helpers;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Converts request and response bodies to and from JSON.
+ * <p>
+ * Implementations must be thread-safe: a single instance is shared by every IO and worker thread. Decoders are resolved once
+ * per endpoint when the server starts, so any per-type lookup should happen in {@link #decoder(Class)} rather than on each
+ * call to {@link Decoder#decode(byte[])}.
+ */
+public interface JsonCodec {
+
+    <T> Decoder<T> decoder(Class<T> type);
+
+    String toJson(Object obj);
+
+    /**
+     * Writes the JSON form of obj to the writer. Override this to stream output without building the whole String first.
+     */
+    default void writeJson(Object obj, Writer writer) throws IOException {
+        writer.write(toJson(obj));
+    }
+
+    @FunctionalInterface
+    interface Decoder<T> {
+        T decode(byte[] json) throws Exception;
+    }
+}
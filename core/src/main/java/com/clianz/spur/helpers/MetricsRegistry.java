@@ -0,0 +1,21 @@
+package com.clianz.spur.helpers;
+
+/**
+ * Pluggable sink for server metrics. Endpoints, executors and scheduled jobs are registered once; the returned
+ * {@link RequestMetrics} is then called directly from the request path.
+ */
+public interface MetricsRegistry {
+
+    RequestMetrics registerEndpoint(String method, String path);
+
+    default void registerExecutor(BoundedExecutor executor) {
+    }
+
+    default void registerScheduledJob(ScheduledJob job) {
+    }
+
+    /**
+     * @return all metrics in the Prometheus text exposition format (version 0.0.4).
+     */
+    String scrape();
+}
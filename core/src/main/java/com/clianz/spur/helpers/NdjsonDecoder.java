@@ -0,0 +1,151 @@
+package com.clianz.spur.helpers;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+/**
+ * Decodes newline-delimited JSON one object at a time as body chunks arrive. Only a line split across chunks is copied aside, so
+ * memory stays bounded by the longest line however large the body is. Blank lines are skipped and a trailing CR is dropped.
+ */
+public class NdjsonDecoder<E> {
+
+    private final JsonCodec.Decoder<E> decoder;
+    private final Validator validator;
+    private final int maxLineBytes;
+    private final List<CompletableFuture<?>> pending = new ArrayList<>();
+    private byte[] partial = new byte[256];
+    private int partialLength;
+    private long lines;
+    private long count;
+
+    /**
+     * @param validator validates each element, or null to skip validation.
+     * @param maxLineBytes longest line accepted; longer ones fail the body.
+     */
+    public NdjsonDecoder(JsonCodec.Decoder<E> decoder, Validator validator, int maxLineBytes) {
+        this.decoder = decoder;
+        this.validator = validator;
+        this.maxLineBytes = maxLineBytes;
+    }
+
+    /**
+     * Passes every complete line of the chunk on to the consumer, keeping an unterminated last line for the next chunk. On the
+     * last chunk, that line is decoded too.
+     *
+     * @return null if every element was handled synchronously, otherwise a stage completing once all of this chunk's are.
+     * @throws BodyDecodeException if a line is too long, is not valid JSON or fails validation.
+     */
+    public CompletionStage<?> decode(ByteBuffer chunk, boolean last, Function<E, CompletionStage<?>> consumer) {
+        pending.clear();
+        while (chunk.hasRemaining()) {
+            int newline = indexOfNewline(chunk);
+            if (newline < 0) {
+                append(chunk, chunk.limit());
+                break;
+            }
+            if (partialLength == 0 && chunk.hasArray()) {
+                int start = chunk.arrayOffset() + chunk.position();
+                line(chunk.array(), start, chunk.arrayOffset() + newline, consumer);
+                chunk.position(newline + 1);
+            } else {
+                append(chunk, newline);
+                chunk.get();
+                line(partial, 0, partialLength, consumer);
+                partialLength = 0;
+            }
+        }
+        if (last && partialLength > 0) {
+            line(partial, 0, partialLength, consumer);
+            partialLength = 0;
+        }
+        if (pending.isEmpty()) {
+            return null;
+        }
+        return pending.size() == 1 ? pending.get(0) : CompletableFuture.allOf(pending.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * @return elements decoded so far.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    private static int indexOfNewline(ByteBuffer chunk) {
+        for (int i = chunk.position(); i < chunk.limit(); i++) {
+            if (chunk.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void append(ByteBuffer chunk, int end) {
+        int length = end - chunk.position();
+        if (partialLength + length > maxLineBytes) {
+            throw new BodyDecodeException("Line " + (lines + 1) + " is longer than " + maxLineBytes + " bytes");
+        }
+        if (partialLength + length > partial.length) {
+            partial = Arrays.copyOf(partial, Math.min(maxLineBytes, Math.max(partial.length * 2, partialLength + length)));
+        }
+        chunk.get(partial, partialLength, length);
+        partialLength += length;
+    }
+
+    private void line(byte[] bytes, int start, int end, Function<E, CompletionStage<?>> consumer) {
+        lines++;
+        if (end > start && bytes[end - 1] == '\r') {
+            end--;
+        }
+        if (end - start > maxLineBytes) {
+            throw new BodyDecodeException("Line " + lines + " is longer than " + maxLineBytes + " bytes");
+        }
+        if (isBlank(bytes, start, end)) {
+            return;
+        }
+        E element;
+        try {
+            element = decoder.decode(Arrays.copyOfRange(bytes, start, end));
+        } catch (Exception e) {
+            throw new BodyDecodeException("Line " + lines + " is not valid JSON", e);
+        }
+        if (element == null) {
+            throw new BodyDecodeException("Line " + lines + " is not valid JSON");
+        }
+        if (validator != null) {
+            Set<ConstraintViolation<E>> violations = validator.validate(element);
+            if (!violations.isEmpty()) {
+                throw new BodyDecodeException("Line " + lines + " has invalid values: " + violations.stream()
+                        .map(violation -> violation.getPropertyPath()
+                                .toString())
+                        .collect(Collectors.joining(", ")));
+            }
+        }
+        count++;
+        CompletionStage<?> stage = consumer.apply(element);
+        if (stage != null) {
+            CompletableFuture<?> future = stage.toCompletableFuture();
+            if (!future.isDone() || future.isCompletedExceptionally()) {
+                pending.add(future);
+            }
+        }
+    }
+
+    private static boolean isBlank(byte[] bytes, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (bytes[i] != ' ' && bytes[i] != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
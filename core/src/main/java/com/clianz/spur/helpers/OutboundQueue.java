@@ -0,0 +1,254 @@
+package com.clianz.spur.helpers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.jboss.logging.Logger;
+import org.xnio.IoUtils;
+
+import io.undertow.websockets.core.WebSocketCallback;
+import io.undertow.websockets.core.WebSocketChannel;
+import io.undertow.websockets.core.WebSockets;
+
+/**
+ * Bounded outbound queue for one websocket.
+ * <p>
+ * Only a few messages are handed to Undertow at a time; the rest wait here, so a slow client can hold at most about
+ * {@code highWatermark} bytes of server memory. Once the queued bytes (waiting plus in flight) would pass the high watermark the
+ * {@link OverflowPolicy} applies until the queue has drained to the low watermark. Every message's callback is told whether it
+ * was written, failed or dropped.
+ */
+public class OutboundQueue {
+
+    private static final Logger LOGGER = Logger.getLogger(OutboundQueue.class.getName());
+    private static final int MAX_IN_FLIGHT = 16;
+    private static final String CLOSED = "Websocket closed before message was sent";
+
+    private final WebSocketChannel channel;
+    private final long highWatermark;
+    private final long lowWatermark;
+    private final OverflowPolicy overflowPolicy;
+    private final Deque<Message> waiting = new ArrayDeque<>();
+    private long queuedBytes;
+    private int queuedMessages;
+    private int inFlight;
+    private long droppedMessages;
+    private boolean congested;
+    private boolean sending;
+    private boolean closed;
+
+    public OutboundQueue(WebSocketChannel channel, long highWatermark, long lowWatermark, OverflowPolicy overflowPolicy) {
+        this.channel = channel;
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public WebSocketChannel getChannel() {
+        return channel;
+    }
+
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    public void sendText(ByteBuffer data, WebSocketCallback<Void> callback) {
+        send(new Message(data, false, callback));
+    }
+
+    public void sendBinary(ByteBuffer data, WebSocketCallback<Void> callback) {
+        send(new Message(data, true, callback));
+    }
+
+    private void send(Message message) {
+        List<Message> dropped = null;
+        String dropReason = null;
+        boolean closeChannel = false;
+        synchronized (this) {
+            if (closed) {
+                dropped = new ArrayList<>(1);
+                dropped.add(message);
+                dropReason = CLOSED;
+                message = null;
+            } else {
+                if (congested && queuedBytes <= lowWatermark) {
+                    congested = false;
+                }
+                if (congested || queuedBytes + message.size > highWatermark) {
+                    congested = true;
+                    dropReason = "Message dropped by outbound queue policy " + overflowPolicy;
+                    switch (overflowPolicy) {
+                        case DROP_NEWEST:
+                            dropped = new ArrayList<>(1);
+                            dropped.add(message);
+                            message = null;
+                            break;
+                        case DROP_OLDEST:
+                            dropped = new ArrayList<>();
+                            while (queuedBytes + message.size > lowWatermark && !waiting.isEmpty()) {
+                                Message oldest = waiting.poll();
+                                dequeued(oldest);
+                                dropped.add(oldest);
+                            }
+                            congested = false;
+                            break;
+                        default:
+                            closed = true;
+                            closeChannel = true;
+                            dropped = drainWaiting();
+                            dropped.add(message);
+                            message = null;
+                    }
+                    droppedMessages += dropped.size();
+                }
+                if (message != null) {
+                    waiting.add(message);
+                    queuedBytes += message.size;
+                    queuedMessages++;
+                }
+            }
+        }
+        if (closeChannel) {
+            LOGGER.warn("Closing slow websocket client " + channel.getPeerAddress() + ", outbound queue is over " + highWatermark
+                    + " bytes");
+            IoUtils.safeClose(channel);
+        }
+        fail(dropped, dropReason);
+        flush();
+    }
+
+    private List<Message> drainWaiting() {
+        List<Message> drained = new ArrayList<>(waiting);
+        drained.forEach(this::dequeued);
+        waiting.clear();
+        return drained;
+    }
+
+    private void dequeued(Message message) {
+        queuedBytes -= message.size;
+        queuedMessages--;
+    }
+
+    /**
+     * Hands waiting messages to Undertow, in order, up to the in-flight limit. The batch is taken under the lock but sent outside
+     * it, so a send completing synchronously runs the caller's callback without the lock held. Only one thread sends at a time,
+     * which keeps messages in order; one arriving meanwhile is picked up by the sending thread's next pass.
+     */
+    private void flush() {
+        while (true) {
+            List<Message> batch;
+            synchronized (this) {
+                if (sending || closed || inFlight >= MAX_IN_FLIGHT || waiting.isEmpty()) {
+                    return;
+                }
+                sending = true;
+                batch = new ArrayList<>(Math.min(waiting.size(), MAX_IN_FLIGHT - inFlight));
+                Message message;
+                while (inFlight < MAX_IN_FLIGHT && (message = waiting.poll()) != null) {
+                    inFlight++;
+                    batch.add(message);
+                }
+            }
+            try {
+                for (Message message : batch) {
+                    if (message.binary) {
+                        WebSockets.sendBinary(message.data, channel, message);
+                    } else {
+                        WebSockets.sendText(message.data, channel, message);
+                    }
+                }
+            } finally {
+                synchronized (this) {
+                    sending = false;
+                }
+            }
+        }
+    }
+
+    private void sent(Message message) {
+        synchronized (this) {
+            inFlight--;
+            dequeued(message);
+        }
+        flush();
+    }
+
+    /**
+     * Fails everything still waiting. Called when the channel closes.
+     */
+    public void close() {
+        List<Message> dropped;
+        synchronized (this) {
+            closed = true;
+            dropped = drainWaiting();
+        }
+        fail(dropped, CLOSED);
+    }
+
+    private void fail(List<Message> dropped, String reason) {
+        if (dropped == null || dropped.isEmpty()) {
+            return;
+        }
+        IOException exception = new IOException(reason);
+        for (Message message : dropped) {
+            if (message.callback != null) {
+                message.callback.onError(channel, null, exception);
+            }
+        }
+    }
+
+    /**
+     * @return bytes waiting or being written.
+     */
+    public synchronized long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    /**
+     * @return messages waiting or being written.
+     */
+    public synchronized int getQueuedMessages() {
+        return queuedMessages;
+    }
+
+    /**
+     * @return messages dropped or rejected by the overflow policy so far.
+     */
+    public synchronized long getDroppedMessages() {
+        return droppedMessages;
+    }
+
+    private class Message implements WebSocketCallback<Void> {
+        private final ByteBuffer data;
+        private final boolean binary;
+        private final int size;
+        private final WebSocketCallback<Void> callback;
+
+        private Message(ByteBuffer data, boolean binary, WebSocketCallback<Void> callback) {
+            this.data = data;
+            this.binary = binary;
+            this.size = data.remaining();
+            this.callback = callback;
+        }
+
+        @Override
+        public void complete(WebSocketChannel channel, Void context) {
+            sent(this);
+            if (callback != null) {
+                callback.complete(channel, context);
+            }
+        }
+
+        @Override
+        public void onError(WebSocketChannel channel, Void context, Throwable throwable) {
+            sent(this);
+            if (callback != null) {
+                callback.onError(channel, context, throwable);
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.clianz.spur.helpers;
+
+/**
+ * What a websocket outbound queue does when a slow client lets it grow past its high watermark.
+ */
+public enum OverflowPolicy {
+    /**
+     * Discard the oldest waiting messages until the queue is back at its low watermark.
+     */
+    DROP_OLDEST,
+    /**
+     * Reject new messages until the queue has drained to its low watermark.
+     */
+    DROP_NEWEST,
+    /**
+     * Close the connection.
+     */
+    CLOSE
+}
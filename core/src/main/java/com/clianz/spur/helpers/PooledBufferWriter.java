@@ -0,0 +1,200 @@
+package com.clianz.spur.helpers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.undertow.connector.ByteBufferPool;
+import io.undertow.connector.PooledByteBuffer;
+
+/**
+ * Writer that UTF-8 encodes straight into buffers borrowed from a {@link ByteBufferPool}, so a serialized body never exists as
+ * a String or byte[] on the heap. Call {@link #flip()} to get the filled buffers for writing and {@link #close()} once the
+ * write has finished to hand them back to the pool.
+ */
+public class PooledBufferWriter extends Writer {
+
+    private final ByteBufferPool pool;
+    private final List<PooledByteBuffer> pooledBuffers = new ArrayList<>(2);
+    private Spill spill;
+    private int maxBuffers;
+    private ByteBuffer current;
+    private char highSurrogate;
+    private long size;
+    private boolean spilled;
+
+    public PooledBufferWriter(ByteBufferPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Hands the filled buffers to the spill whenever more than maxBuffers would be needed, and reuses the pool's buffers after,
+     * so the writer never holds more than maxBuffers however much is written. {@link #size()} still counts every byte.
+     */
+    public PooledBufferWriter spillOver(int maxBuffers, Spill spill) {
+        this.maxBuffers = maxBuffers;
+        this.spill = spill;
+        return this;
+    }
+
+    /**
+     * @return true once anything has been handed to the spill.
+     */
+    public boolean hasSpilled() {
+        return spilled;
+    }
+
+    @Override
+    public void write(char[] chars, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            writeChar(chars[i]);
+        }
+    }
+
+    @Override
+    public void write(int c) {
+        writeChar((char) c);
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            writeChar(str.charAt(i));
+        }
+    }
+
+    private void writeChar(char c) {
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(high, c);
+                ensureCapacity(4);
+                current.put((byte) (0xF0 | (codePoint >> 18)));
+                current.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                current.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                current.put((byte) (0x80 | (codePoint & 0x3F)));
+                size += 4;
+                return;
+            }
+            writeReplacement();
+        }
+
+        if (c < 0x80) {
+            ensureCapacity(1);
+            current.put((byte) c);
+            size++;
+        } else if (c < 0x800) {
+            ensureCapacity(2);
+            current.put((byte) (0xC0 | (c >> 6)));
+            current.put((byte) (0x80 | (c & 0x3F)));
+            size += 2;
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            writeReplacement();
+        } else {
+            ensureCapacity(3);
+            current.put((byte) (0xE0 | (c >> 12)));
+            current.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+            current.put((byte) (0x80 | (c & 0x3F)));
+            size += 3;
+        }
+    }
+
+    private void writeReplacement() {
+        ensureCapacity(1);
+        current.put((byte) '?');
+        size++;
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (current == null || current.remaining() < bytes) {
+            if (spill != null && pooledBuffers.size() >= maxBuffers) {
+                spillFilled();
+            }
+            PooledByteBuffer pooled = pool.allocate();
+            pooledBuffers.add(pooled);
+            current = pooled.getBuffer();
+            current.clear();
+        }
+    }
+
+    private void spillFilled() {
+        ByteBuffer[] filled = new ByteBuffer[pooledBuffers.size()];
+        for (int i = 0; i < filled.length; i++) {
+            filled[i] = pooledBuffers.get(i)
+                    .getBuffer();
+            filled[i].flip();
+        }
+        spilled = true;
+        try {
+            spill.spill(filled);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * @return number of bytes encoded so far.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Flips the filled buffers ready for a (gathering) channel write. No further writes are allowed afterwards.
+     */
+    public ByteBuffer[] flip() {
+        if (highSurrogate != 0) {
+            highSurrogate = 0;
+            writeReplacement();
+        }
+        ByteBuffer[] buffers = new ByteBuffer[pooledBuffers.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pooledBuffers.get(i)
+                    .getBuffer();
+            buffers[i].flip();
+        }
+        current = null;
+        return buffers;
+    }
+
+    /**
+     * Copies everything written onto the heap. No further writes are allowed afterwards; the buffers still need {@link #close()}.
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[(int) size];
+        int offset = 0;
+        for (ByteBuffer buffer : flip()) {
+            int length = buffer.remaining();
+            buffer.get(bytes, offset, length);
+            offset += length;
+        }
+        return bytes;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+        pooledBuffers.forEach(PooledByteBuffer::close);
+        pooledBuffers.clear();
+        current = null;
+    }
+
+    /**
+     * Takes buffers the writer has filled. They are handed back to the pool once this returns.
+     */
+    @FunctionalInterface
+    public interface Spill {
+        void spill(ByteBuffer[] filled) throws IOException;
+    }
+}
@@ -0,0 +1,66 @@
+package com.clianz.spur.helpers;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A response body compressed ahead of time, for payloads sent over and over. Each variant is compressed once, and requests pick
+ * one by Accept-Encoding; clients accepting none of them get the uncompressed body. Safe to share between requests once built.
+ */
+public class PrecompressedBody {
+
+    private final byte[] bytes;
+    private final ByteBuffer body;
+    private final String contentType;
+    private final Map<String, ByteBuffer> variants = new LinkedHashMap<>();
+
+    public PrecompressedBody(byte[] body, String contentType) {
+        this.bytes = body;
+        this.body = readOnly(body);
+        this.contentType = contentType;
+    }
+
+    /**
+     * Adds bytes already compressed with the content-coding, e.g. "br" from a Brotli library. Codings added first win when
+     * the client accepts several equally.
+     */
+    public PrecompressedBody variant(String contentCoding, byte[] compressed) {
+        variants.put(contentCoding, readOnly(compressed));
+        return this;
+    }
+
+    /**
+     * Adds a gzip variant compressed at the level (1-9); use 9 for payloads that are compressed once and sent many times.
+     */
+    public PrecompressedBody gzip(int level) {
+        return variant(Compression.GZIP, Compression.gzip(bytes, level));
+    }
+
+    public PrecompressedBody deflate(int level) {
+        return variant("deflate", Compression.deflate(bytes, level));
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return the best content-coding for the request, or null to send the body uncompressed.
+     */
+    public String negotiate(String acceptEncoding) {
+        return Compression.negotiate(acceptEncoding, variants.keySet());
+    }
+
+    /**
+     * @return a fresh view of the bytes for the content-coding, or of the uncompressed body for null.
+     */
+    public ByteBuffer get(String contentCoding) {
+        return (contentCoding == null ? body : variants.get(contentCoding)).duplicate();
+    }
+
+    private static ByteBuffer readOnly(byte[] bytes) {
+        return ByteBuffer.wrap(bytes)
+                .asReadOnlyBuffer();
+    }
+}
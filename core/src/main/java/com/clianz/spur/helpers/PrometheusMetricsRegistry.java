@@ -0,0 +1,151 @@
+package com.clianz.spur.helpers;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Default {@link MetricsRegistry}, keeping {@link EndpointMetrics} in memory and rendering them in the Prometheus text format.
+ */
+public class PrometheusMetricsRegistry implements MetricsRegistry {
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private final List<EndpointMetrics> endpoints = new CopyOnWriteArrayList<>();
+    private final List<BoundedExecutor> executors = new CopyOnWriteArrayList<>();
+    private final List<ScheduledJob> jobs = new CopyOnWriteArrayList<>();
+
+    @Override
+    public RequestMetrics registerEndpoint(String method, String path) {
+        EndpointMetrics metrics = new EndpointMetrics(method, path);
+        endpoints.add(metrics);
+        return metrics;
+    }
+
+    @Override
+    public void registerExecutor(BoundedExecutor executor) {
+        if (!executors.contains(executor)) {
+            executors.add(executor);
+        }
+    }
+
+    @Override
+    public void registerScheduledJob(ScheduledJob job) {
+        jobs.add(job);
+    }
+
+    public List<EndpointMetrics> getEndpoints() {
+        return endpoints;
+    }
+
+    @Override
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+
+        out.append("# TYPE spur_requests_in_flight gauge\n");
+        for (EndpointMetrics endpoint : endpoints) {
+            out.append("spur_requests_in_flight{")
+                    .append(endpointLabels(endpoint))
+                    .append("} ")
+                    .append(endpoint.getInFlight())
+                    .append('\n');
+        }
+
+        out.append("# TYPE spur_request_duration_seconds summary\n");
+        for (EndpointMetrics endpoint : endpoints) {
+            for (int statusClass = 1; statusClass <= 5; statusClass++) {
+                LatencyHistogram latency = endpoint.getLatency(statusClass);
+                if (latency != null) {
+                    appendSummary(out, "spur_request_duration_seconds", endpointLabels(endpoint) + ",status=\"" + statusClass + "xx\"",
+                            latency);
+                }
+            }
+        }
+
+        out.append("# TYPE spur_body_parse_duration_seconds summary\n");
+        for (EndpointMetrics endpoint : endpoints) {
+            if (endpoint.getBodyParseLatency()
+                    .getCount() > 0) {
+                appendSummary(out, "spur_body_parse_duration_seconds", endpointLabels(endpoint), endpoint.getBodyParseLatency());
+            }
+        }
+
+        if (!executors.isEmpty()) {
+            out.append("# TYPE spur_executor_active gauge\n");
+            executors.forEach(executor -> appendExecutor(out, "spur_executor_active", executor, executor.getActiveCount()));
+            out.append("# TYPE spur_executor_queued gauge\n");
+            executors.forEach(executor -> appendExecutor(out, "spur_executor_queued", executor, executor.getQueuedCount()));
+            out.append("# TYPE spur_executor_completed_total counter\n");
+            executors.forEach(executor -> appendExecutor(out, "spur_executor_completed_total", executor, executor.getCompletedCount()));
+            out.append("# TYPE spur_executor_rejected_total counter\n");
+            executors.forEach(executor -> appendExecutor(out, "spur_executor_rejected_total", executor, executor.getRejectedCount()));
+        }
+
+        jobs.removeIf(ScheduledJob::isCancelled);
+        if (!jobs.isEmpty()) {
+            out.append("# TYPE spur_job_duration_seconds summary\n");
+            jobs.forEach(job -> appendSummary(out, "spur_job_duration_seconds", jobLabels(job), job.getDurations()));
+            out.append("# TYPE spur_job_skipped_total counter\n");
+            jobs.forEach(job -> appendJob(out, "spur_job_skipped_total", job, job.getSkippedRuns()));
+            out.append("# TYPE spur_job_failures_total counter\n");
+            jobs.forEach(job -> appendJob(out, "spur_job_failures_total", job, job.getFailures()));
+        }
+        return out.toString();
+    }
+
+    private static void appendSummary(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        for (double quantile : QUANTILES) {
+            out.append(name)
+                    .append('{')
+                    .append(labels)
+                    .append(",quantile=\"")
+                    .append(quantile)
+                    .append("\"} ")
+                    .append(histogram.getQuantileSeconds(quantile))
+                    .append('\n');
+        }
+        out.append(name)
+                .append("_sum{")
+                .append(labels)
+                .append("} ")
+                .append(histogram.getSumSeconds())
+                .append('\n');
+        out.append(name)
+                .append("_count{")
+                .append(labels)
+                .append("} ")
+                .append(histogram.getCount())
+                .append('\n');
+    }
+
+    private static void appendExecutor(StringBuilder out, String name, BoundedExecutor executor, long value) {
+        out.append(name)
+                .append("{executor=\"")
+                .append(escape(executor.getName()))
+                .append("\"} ")
+                .append(value)
+                .append('\n');
+    }
+
+    private static void appendJob(StringBuilder out, String name, ScheduledJob job, long value) {
+        out.append(name)
+                .append('{')
+                .append(jobLabels(job))
+                .append("} ")
+                .append(value)
+                .append('\n');
+    }
+
+    private static String jobLabels(ScheduledJob job) {
+        return "job=\"" + escape(job.getName()) + "\"";
+    }
+
+    private static String endpointLabels(EndpointMetrics endpoint) {
+        return "method=\"" + escape(endpoint.getMethod()) + "\",path=\"" + escape(endpoint.getPath()) + "\"";
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\")
+                .replace("\"", "\\\"")
+                .replace("\n", "\\n");
+    }
+}
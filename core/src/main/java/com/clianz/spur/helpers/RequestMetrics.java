@@ -0,0 +1,14 @@
+package com.clianz.spur.helpers;
+
+/**
+ * Receives timings for a single endpoint. Called on IO and worker threads concurrently, so implementations must be
+ * thread-safe and cheap.
+ */
+public interface RequestMetrics {
+
+    void requestStarted();
+
+    void requestCompleted(int statusCode, long durationNanos);
+
+    void bodyParsed(long durationNanos);
+}
@@ -0,0 +1,195 @@
+package com.clianz.spur.helpers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+
+/**
+ * Response cache for one GET route, keyed by request path, query string and the configured vary headers. Requests with an
+ * Authorization header bypass it unless Authorization is one of the vary headers, and responses marked Cache-Control no-store
+ * or private are not stored.
+ * <p>
+ * Entries expire after the TTL and the total size is bounded in bytes. Eviction is LRU, with a TinyLFU admission filter: when
+ * a new entry would push out others, it is only admitted if it has been requested more often recently than the entries it
+ * would replace, so a burst of one-off URLs cannot flush the popular ones.
+ */
+public class ResponseCache {
+
+    private final long ttlNanos;
+    private final long maxBytes;
+    private final HttpString[] varyHeaders;
+    private final String vary;
+    private final boolean offHeap;
+    private final boolean varyAuthorization;
+    private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final FrequencySketch sketch;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private Compression compression;
+    private long bytes;
+
+    public ResponseCache(long ttlNanos, long maxBytes, String[] varyHeaders, boolean offHeap) {
+        this.ttlNanos = ttlNanos;
+        this.maxBytes = maxBytes;
+        this.varyHeaders = new HttpString[varyHeaders.length];
+        for (int i = 0; i < varyHeaders.length; i++) {
+            this.varyHeaders[i] = new HttpString(varyHeaders[i]);
+        }
+        this.vary = String.join(", ", varyHeaders);
+        this.offHeap = offHeap;
+        this.varyAuthorization = Arrays.stream(this.varyHeaders)
+                .anyMatch(Headers.AUTHORIZATION::equals);
+        this.sketch = new FrequencySketch((int) Math.min(maxBytes / 1024, 1 << 20));
+    }
+
+    /**
+     * Also stores a gzip variant of the bodies this compresses; null (the default) for none.
+     */
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * @return false if the request carries credentials the key does not include, so its response must not be shared.
+     */
+    public boolean isShareable(HttpServerExchange exchange) {
+        return varyAuthorization || !exchange.getRequestHeaders()
+                .contains(Headers.AUTHORIZATION);
+    }
+
+    /**
+     * @return false if the response forbids shared caching, with Cache-Control no-store or private.
+     */
+    public static boolean isStorable(HeaderMap responseHeaders) {
+        HeaderValues cacheControl = responseHeaders.get(Headers.CACHE_CONTROL);
+        if (cacheControl == null) {
+            return true;
+        }
+        for (String value : cacheControl) {
+            for (String directive : value.split(",")) {
+                String name = directive.trim();
+                int equals = name.indexOf('=');
+                if (equals >= 0) {
+                    name = name.substring(0, equals)
+                            .trim();
+                }
+                if (name.equalsIgnoreCase("no-store") || name.equalsIgnoreCase("private")) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public String key(HttpServerExchange exchange) {
+        String path = exchange.getRequestPath();
+        String query = exchange.getQueryString();
+        if (query.isEmpty() && varyHeaders.length == 0) {
+            return path;
+        }
+        StringBuilder key = new StringBuilder(path.length() + query.length() + 32).append(path)
+                .append('?')
+                .append(query);
+        for (HttpString varyHeader : varyHeaders) {
+            String value = exchange.getRequestHeaders()
+                    .getFirst(varyHeader);
+            key.append('\n')
+                    .append(value == null ? "" : value);
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return the fresh entry for the key, or null on a miss.
+     */
+    public CachedResponse get(String key) {
+        CachedResponse entry;
+        synchronized (this) {
+            sketch.increment(key.hashCode());
+            entry = entries.get(key);
+            if (entry != null && entry.isExpired(System.nanoTime())) {
+                entries.remove(key);
+                bytes -= entry.getSize();
+                entry = null;
+            }
+        }
+        (entry == null ? misses : hits).increment();
+        return entry;
+    }
+
+    public CachedResponse create(HttpServerExchange exchange, Collection<HttpString> headersBefore, byte[] body) {
+        return CachedResponse.of(exchange, headersBefore, body, vary, ttlNanos, compression, offHeap);
+    }
+
+    /**
+     * Stores the entry, evicting least recently used ones to make room if the admission filter lets it in.
+     *
+     * @return false when the entry was not admitted.
+     */
+    public synchronized boolean put(String key, CachedResponse entry) {
+        CachedResponse previous = entries.remove(key);
+        if (previous != null) {
+            bytes -= previous.getSize();
+        }
+        if (entry.getSize() > maxBytes) {
+            return false;
+        }
+
+        long now = System.nanoTime();
+        int candidateFrequency = sketch.frequency(key.hashCode());
+        List<Map.Entry<String, CachedResponse>> victims = new ArrayList<>();
+        long freed = 0;
+        Iterator<Map.Entry<String, CachedResponse>> lru = entries.entrySet()
+                .iterator();
+        while (bytes - freed + entry.getSize() > maxBytes && lru.hasNext()) {
+            Map.Entry<String, CachedResponse> victim = lru.next();
+            if (!victim.getValue()
+                    .isExpired(now) && sketch.frequency(victim.getKey()
+                    .hashCode()) > candidateFrequency) {
+                return false;
+            }
+            victims.add(victim);
+            freed += victim.getValue()
+                    .getSize();
+        }
+        for (Map.Entry<String, CachedResponse> victim : victims) {
+            entries.remove(victim.getKey());
+        }
+        bytes -= freed;
+        entries.put(key, entry);
+        bytes += entry.getSize();
+        return true;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+}
@@ -0,0 +1,247 @@
+package com.clianz.spur.helpers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import io.undertow.server.HttpServerExchange;
+
+/**
+ * Immutable path router compiled once from route templates.
+ * <p>
+ * Templates are split on '/' into segments; a segment is either a literal, a parameter such as {@code {id}}, or a trailing
+ * {@code *} that matches the rest of the path. Literal segments win over parameters, which win over wildcards. Matching walks
+ * the request path in place and allocates nothing; parameter values are only cut out of the path once a route has matched.
+ */
+public class RouteTrie<V> {
+
+    static final String WILDCARD = "*";
+
+    private final Node<V> root;
+
+    private RouteTrie(Node<V> root) {
+        this.root = root;
+    }
+
+    public static <V> Builder<V> builder() {
+        return new Builder<>();
+    }
+
+    public Leaf<V> match(String path) {
+        return match(root, path, 0);
+    }
+
+    private static <V> Leaf<V> match(Node<V> node, String path, int pos) {
+        int start = skipSlashes(path, pos);
+        if (start == path.length()) {
+            return node.leaf != null ? node.leaf : node.wildcardLeaf;
+        }
+        int end = segmentEnd(path, start);
+
+        Node<V> literalChild = node.literalChild(path, start, end);
+        if (literalChild != null) {
+            Leaf<V> leaf = match(literalChild, path, end);
+            if (leaf != null) {
+                return leaf;
+            }
+        }
+        if (node.paramChild != null) {
+            Leaf<V> leaf = match(node.paramChild, path, end);
+            if (leaf != null) {
+                return leaf;
+            }
+        }
+        return node.wildcardLeaf;
+    }
+
+    private static int skipSlashes(String path, int pos) {
+        while (pos < path.length() && path.charAt(pos) == '/') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int segmentEnd(String path, int start) {
+        int end = path.indexOf('/', start);
+        return end < 0 ? path.length() : end;
+    }
+
+    /**
+     * A matched route: the value registered for the template plus what is needed to extract its parameters.
+     */
+    public static class Leaf<V> {
+        private final String template;
+        private final V value;
+        private final String[] paramNames;
+        private final boolean wildcard;
+        private final boolean hasParams;
+
+        private Leaf(String template, V value, String[] paramNames, boolean wildcard) {
+            this.template = template;
+            this.value = value;
+            this.paramNames = paramNames;
+            this.wildcard = wildcard;
+            boolean params = wildcard;
+            for (String paramName : paramNames) {
+                params |= paramName != null;
+            }
+            this.hasParams = params;
+        }
+
+        public String getTemplate() {
+            return template;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        /**
+         * Adds the path parameters (and the wildcard remainder, keyed "*") to the exchange's query parameters, the same way
+         * Undertow's PathTemplateHandler does.
+         */
+        public void addPathParams(HttpServerExchange exchange, String path) {
+            if (!hasParams) {
+                return;
+            }
+            int segment = 0;
+            int start = skipSlashes(path, 0);
+            while (start < path.length() && segment < paramNames.length) {
+                int end = segmentEnd(path, start);
+                if (paramNames[segment] != null) {
+                    exchange.addQueryParam(paramNames[segment], path.substring(start, end));
+                }
+                segment++;
+                start = skipSlashes(path, end);
+            }
+            if (wildcard) {
+                exchange.addQueryParam(WILDCARD, path.substring(start));
+            }
+        }
+    }
+
+    private static class Node<V> {
+        private String[] literalKeys;
+        private Node<V>[] literalChildren;
+        private Node<V> paramChild;
+        private Leaf<V> leaf;
+        private Leaf<V> wildcardLeaf;
+
+        private Node<V> literalChild(String path, int start, int end) {
+            int low = 0;
+            int high = literalKeys.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compareRegion(literalKeys[mid], path, start, end);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return literalChildren[mid];
+                }
+            }
+            return null;
+        }
+
+        private static int compareRegion(String key, String path, int start, int end) {
+            int regionLength = end - start;
+            int limit = Math.min(key.length(), regionLength);
+            for (int i = 0; i < limit; i++) {
+                int diff = key.charAt(i) - path.charAt(start + i);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return key.length() - regionLength;
+        }
+    }
+
+    public static class Builder<V> {
+        private final BuilderNode<V> root = new BuilderNode<>();
+
+        private Builder() {
+        }
+
+        public Builder<V> add(String template, V value) {
+            List<String> segments = segments(template);
+            String[] paramNames = new String[segments.size()];
+            boolean wildcard = false;
+            BuilderNode<V> node = root;
+            for (int i = 0; i < segments.size(); i++) {
+                String segment = segments.get(i);
+                if (WILDCARD.equals(segment)) {
+                    if (i != segments.size() - 1) {
+                        throw new IllegalArgumentException("Wildcard must be the last segment of path: " + template);
+                    }
+                    wildcard = true;
+                    paramNames = Arrays.copyOf(paramNames, i);
+                } else if (segment.startsWith("{") && segment.endsWith("}")) {
+                    paramNames[i] = segment.substring(1, segment.length() - 1);
+                    if (node.paramChild == null) {
+                        node.paramChild = new BuilderNode<>();
+                    }
+                    node = node.paramChild;
+                } else if (segment.contains("{") || segment.contains("}") || segment.contains(WILDCARD)) {
+                    throw new IllegalArgumentException("Parameters and wildcards must span a whole path segment: " + template);
+                } else {
+                    node = node.literalChildren.computeIfAbsent(segment, key -> new BuilderNode<>());
+                }
+            }
+
+            Leaf<V> leaf = new Leaf<>(template, value, paramNames, wildcard);
+            if (wildcard) {
+                node.wildcardLeaf = checkDuplicate(node.wildcardLeaf, leaf);
+            } else {
+                node.leaf = checkDuplicate(node.leaf, leaf);
+            }
+            return this;
+        }
+
+        public RouteTrie<V> build() {
+            return new RouteTrie<>(root.freeze());
+        }
+
+        private static <V> Leaf<V> checkDuplicate(Leaf<V> existing, Leaf<V> leaf) {
+            if (existing != null) {
+                throw new IllegalArgumentException("Path " + leaf.template + " clashes with already registered " + existing.template);
+            }
+            return leaf;
+        }
+
+        private static List<String> segments(String template) {
+            List<String> segments = new ArrayList<>();
+            for (String segment : template.split("/")) {
+                if (!segment.isEmpty()) {
+                    segments.add(segment);
+                }
+            }
+            return segments;
+        }
+    }
+
+    private static class BuilderNode<V> {
+        private final Map<String, BuilderNode<V>> literalChildren = new TreeMap<>();
+        private BuilderNode<V> paramChild;
+        private Leaf<V> leaf;
+        private Leaf<V> wildcardLeaf;
+
+        @SuppressWarnings("unchecked")
+        private Node<V> freeze() {
+            Node<V> node = new Node<>();
+            node.literalKeys = literalChildren.keySet()
+                    .toArray(new String[0]);
+            node.literalChildren = new Node[node.literalKeys.length];
+            for (int i = 0; i < node.literalKeys.length; i++) {
+                node.literalChildren[i] = literalChildren.get(node.literalKeys[i])
+                        .freeze();
+            }
+            node.paramChild = paramChild == null ? null : paramChild.freeze();
+            node.leaf = leaf;
+            node.wildcardLeaf = wildcardLeaf;
+            return node;
+        }
+    }
+}
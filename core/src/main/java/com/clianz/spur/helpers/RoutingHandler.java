@@ -0,0 +1,27 @@
+package com.clianz.spur.helpers;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.ResponseCodeHandler;
+
+public class RoutingHandler implements HttpHandler {
+
+    private final RouteTrie<HttpHandler> routes;
+
+    public RoutingHandler(RouteTrie<HttpHandler> routes) {
+        this.routes = routes;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        String path = exchange.getRelativePath();
+        RouteTrie.Leaf<HttpHandler> leaf = routes.match(path);
+        if (leaf == null) {
+            ResponseCodeHandler.HANDLE_404.handleRequest(exchange);
+            return;
+        }
+        leaf.addPathParams(exchange, path);
+        leaf.getValue()
+                .handleRequest(exchange);
+    }
+}
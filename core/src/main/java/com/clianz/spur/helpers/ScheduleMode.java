@@ -0,0 +1,8 @@
+package com.clianz.spur.helpers;
+
+public enum ScheduleMode {
+    /** Start runs on a fixed cadence, measured from the first run. Late runs do not shift the ones after them. */
+    FIXED_RATE,
+    /** Wait the interval after each run finishes before starting the next one. */
+    FIXED_DELAY
+}
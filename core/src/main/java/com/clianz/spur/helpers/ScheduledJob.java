@@ -0,0 +1,182 @@
+package com.clianz.spur.helpers;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Handle to a periodic task on the server's {@link JobScheduler}, with its run statistics.
+ * <p>
+ * Each run schedules the next one itself: fixed-rate jobs before running, against a nominal timeline that jitter and late
+ * runs do not shift, and fixed-delay jobs after finishing. A run that comes due while another one, scheduled or from
+ * {@link #runNow()}, is still going is skipped unless overlap is allowed.
+ */
+public class ScheduledJob {
+
+    private static final Logger LOGGER = Logger.getLogger(ScheduledJob.class.getName());
+
+    private final String name;
+    private final Runnable task;
+    private final long periodNanos;
+    private final ScheduleMode mode;
+    private final long jitterNanos;
+    private final boolean allowOverlap;
+    private final JobScheduler scheduler;
+
+    private final AtomicInteger running = new AtomicInteger();
+    private final LatencyHistogram durations = new LatencyHistogram();
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private volatile boolean cancelled;
+    private volatile ScheduledExecutorService executor;
+    private volatile ScheduledFuture<?> next;
+    // Bumped on every arm, so a run from before a shutdown/resume can not reschedule itself next to the new chain.
+    private volatile int generation;
+    private long nextNominalNanos;
+
+    ScheduledJob(String name, Runnable task, long periodNanos, ScheduleMode mode, long jitterNanos, boolean allowOverlap,
+            JobScheduler scheduler) {
+        if (periodNanos <= 0) {
+            throw new IllegalArgumentException("Interval of job " + name + " must be positive");
+        }
+        this.name = name;
+        this.task = task;
+        this.periodNanos = periodNanos;
+        this.mode = mode;
+        this.jitterNanos = jitterNanos;
+        this.allowOverlap = allowOverlap;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Stops future runs. A run already in progress finishes.
+     */
+    public void cancel() {
+        cancelled = true;
+        ScheduledFuture<?> future = next;
+        if (future != null) {
+            future.cancel(false);
+        }
+        scheduler.remove(this);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    public long getRuns() {
+        return runs.sum();
+    }
+
+    /**
+     * @return scheduled runs skipped because another run was still going, plus fixed-rate runs the scheduler fell behind on.
+     */
+    public long getSkippedRuns() {
+        return skipped.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public LatencyHistogram getDurations() {
+        return durations;
+    }
+
+    void arm(ScheduledExecutorService executor, long initialDelayNanos) {
+        this.executor = executor;
+        int armed = ++generation;
+        nextNominalNanos = System.nanoTime() + initialDelayNanos;
+        scheduleAt(nextNominalNanos, armed);
+    }
+
+    /**
+     * Runs the task once on the calling thread, outside the schedule: the next scheduled run stays where it is.
+     *
+     * @return false if the job is cancelled, or a run is still going and overlap is not allowed.
+     */
+    public boolean runNow() {
+        return !cancelled && execute();
+    }
+
+    private void run(int armed) {
+        if (cancelled || armed != generation) {
+            return;
+        }
+        if (mode == ScheduleMode.FIXED_RATE) {
+            long now = System.nanoTime();
+            nextNominalNanos += periodNanos;
+            if (nextNominalNanos < now) {
+                long missed = (now - nextNominalNanos) / periodNanos + 1;
+                skipped.add(missed);
+                nextNominalNanos += missed * periodNanos;
+            }
+            scheduleAt(nextNominalNanos, armed);
+        }
+
+        try {
+            if (!execute()) {
+                skipped.increment();
+            }
+        } finally {
+            if (mode == ScheduleMode.FIXED_DELAY) {
+                scheduleAt(System.nanoTime() + periodNanos, armed);
+            }
+        }
+    }
+
+    /**
+     * @return false if skipped because another run is still going.
+     */
+    private boolean execute() {
+        if (running.incrementAndGet() > 1 && !allowOverlap) {
+            running.decrementAndGet();
+            return false;
+        }
+        long start = System.nanoTime();
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            failures.increment();
+            LOGGER.error("Scheduled job " + name + " failed: " + e.getMessage(), e);
+        } finally {
+            long duration = System.nanoTime() - start;
+            running.decrementAndGet();
+            runs.increment();
+            durations.recordNanos(duration);
+        }
+        return true;
+    }
+
+    private void scheduleAt(long nanoTime, int armed) {
+        if (cancelled || armed != generation) {
+            return;
+        }
+        long delay = nanoTime - System.nanoTime();
+        if (jitterNanos > 0) {
+            delay += ThreadLocalRandom.current()
+                    .nextLong(jitterNanos + 1);
+        }
+        try {
+            next = executor.schedule(() -> run(armed), Math.max(delay, 0), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Scheduler stopped, not rescheduling job " + name);
+        }
+    }
+}
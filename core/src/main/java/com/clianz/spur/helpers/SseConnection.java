@@ -0,0 +1,210 @@
+package com.clianz.spur.helpers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+import org.jboss.logging.Logger;
+import org.xnio.ChannelListener;
+import org.xnio.ChannelListeners;
+import org.xnio.IoUtils;
+import org.xnio.XnioIoThread;
+import org.xnio.channels.StreamSinkChannel;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.Protocols;
+
+/**
+ * One client listening for server-sent events.
+ * <p>
+ * All writes happen on the connection's IO thread. Events queue up while the socket is not writable and go out together in
+ * one gathering write. A client more than {@code maxPending} events behind has its stream dropped; it can catch up from the
+ * publisher's replay buffer when it reconnects with Last-Event-ID.
+ */
+public class SseConnection {
+
+    private static final Logger LOGGER = Logger.getLogger(SseConnection.class.getName());
+    private static final int MAX_GATHER = 16;
+
+    private final HttpServerExchange exchange;
+    private final StreamSinkChannel sink;
+    private final int maxPending;
+    private final Consumer<SseConnection> onClosed;
+    private final Deque<ByteBuffer> pending = new ArrayDeque<>();
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    private final ChannelListener<StreamSinkChannel> writeListener = channel -> flush();
+    private long lastEventId;
+    private long lastWriteNanos = System.nanoTime();
+    private boolean waitingForWritable;
+    private boolean closed;
+
+    SseConnection(HttpServerExchange exchange, StreamSinkChannel sink, int maxPending, Consumer<SseConnection> onClosed) {
+        this.exchange = exchange;
+        this.sink = sink;
+        this.maxPending = maxPending;
+        this.onClosed = onClosed;
+    }
+
+    /**
+     * Sends an unnamed event to this client only. It gets no id and is not kept for replay.
+     */
+    public void send(String data) {
+        send(null, data);
+    }
+
+    /**
+     * Sends a named event to this client only. It gets no id and is not kept for replay.
+     */
+    public void send(String event, String data) {
+        ByteBuffer encoded = SsePublisher.encode(0, event, data);
+        runOnIoThread(() -> {
+            queue(encoded);
+            flush();
+        });
+    }
+
+    /**
+     * Ends this client's event stream. Other streams sharing the connection, as under HTTP/2, are left alone.
+     */
+    public void close() {
+        runOnIoThread(() -> {
+            closed();
+            exchange.endExchange();
+        });
+    }
+
+    public String getRequestHeader(String headerName) {
+        return exchange.getRequestHeaders()
+                .getFirst(headerName);
+    }
+
+    public HeaderMap getRequestHeaders() {
+        return exchange.getRequestHeaders();
+    }
+
+    public XnioIoThread getIoThread() {
+        return exchange.getIoThread();
+    }
+
+    private void runOnIoThread(Runnable task) {
+        XnioIoThread ioThread = exchange.getIoThread();
+        if (ioThread == Thread.currentThread()) {
+            task.run();
+        } else {
+            ioThread.execute(task);
+        }
+    }
+
+    /**
+     * Queues a published event unless this connection already has it, which happens when an event is both replayed and
+     * delivered live while the client connects. IO thread only.
+     */
+    void queue(SsePublisher.Event event) {
+        if (event.id <= lastEventId) {
+            return;
+        }
+        lastEventId = event.id;
+        queue(event.data.duplicate());
+    }
+
+    private void queue(ByteBuffer data) {
+        if (closed) {
+            return;
+        }
+        if (pending.size() >= maxPending) {
+            LOGGER.warn("Closing slow SSE client " + exchange.getSourceAddress() + " with " + pending.size() + " events pending");
+            abort();
+            return;
+        }
+        pending.add(data);
+    }
+
+    /**
+     * Sends a keep-alive comment if nothing has been written for the interval. IO thread only.
+     */
+    void keepAliveIfIdle(long nowNanos, long intervalNanos) {
+        if (pending.isEmpty() && nowNanos - lastWriteNanos >= intervalNanos) {
+            queue(SsePublisher.KEEP_ALIVE.duplicate());
+            flush();
+        }
+    }
+
+    /**
+     * Writes as much as the socket takes, then waits for it to become writable if anything is left. IO thread only.
+     */
+    void flush() {
+        if (closed) {
+            return;
+        }
+        try {
+            while (!pending.isEmpty()) {
+                int count = 0;
+                Iterator<ByteBuffer> iterator = pending.iterator();
+                while (count < MAX_GATHER && iterator.hasNext()) {
+                    gather[count++] = iterator.next();
+                }
+                long written = sink.write(gather, 0, count);
+                while (!pending.isEmpty() && !pending.peek()
+                        .hasRemaining()) {
+                    pending.poll();
+                }
+                if (written == 0) {
+                    break;
+                }
+            }
+            Arrays.fill(gather, null);
+            if (pending.isEmpty() && sink.flush()) {
+                lastWriteNanos = System.nanoTime();
+                if (waitingForWritable) {
+                    waitingForWritable = false;
+                    sink.suspendWrites();
+                }
+            } else if (!waitingForWritable) {
+                waitingForWritable = true;
+                sink.getWriteSetter()
+                        .set(writeListener);
+                sink.resumeWrites();
+            }
+        } catch (IOException e) {
+            LOGGER.debug("SSE write failed: " + e.getMessage(), e);
+            abort();
+        }
+    }
+
+    /**
+     * Drops this stream, leaving other streams on the same connection alone. Undertow 1.4 breaks the whole HTTP/2 connection
+     * when a stream is closed while its data waits on flow control, so an HTTP/2 stream is ended instead and goes away once
+     * the client reads again or disconnects.
+     */
+    private void abort() {
+        closed();
+        if (!Protocols.HTTP_2_0.equals(exchange.getProtocol())) {
+            IoUtils.safeClose(sink);
+            return;
+        }
+        try {
+            sink.shutdownWrites();
+            if (!sink.flush()) {
+                sink.getWriteSetter()
+                        .set(ChannelListeners.flushingChannelListener(null, ChannelListeners.closingChannelExceptionHandler()));
+                sink.resumeWrites();
+            }
+        } catch (IOException e) {
+            IoUtils.safeClose(sink);
+        }
+    }
+
+    void closed() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pending.clear();
+        onClosed.accept(this);
+    }
+}
@@ -0,0 +1,276 @@
+package com.clianz.spur.helpers;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.jboss.logging.Logger;
+import org.xnio.XnioIoThread;
+import org.xnio.channels.StreamSinkChannel;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.SameThreadExecutor;
+
+/**
+ * Server-sent events for one path.
+ * <p>
+ * Each published event gets the next id and is encoded once; every connection writes a duplicate of the same read-only
+ * buffer. Connections are grouped by IO thread and each IO thread is woken at most once per burst of events. The last
+ * {@code replayCapacity} events are kept, so a client reconnecting with a Last-Event-ID header gets exactly what it missed.
+ * Keep-alive comments come from one timer per IO thread rather than one per connection, and only go to idle connections.
+ */
+public class SsePublisher implements HttpHandler {
+
+    static final ByteBuffer KEEP_ALIVE = ByteBuffer.wrap(":\n\n".getBytes(StandardCharsets.UTF_8))
+            .asReadOnlyBuffer();
+
+    private static final Logger LOGGER = Logger.getLogger(SsePublisher.class.getName());
+    private static final HttpString LAST_EVENT_ID = new HttpString("Last-Event-ID");
+    private static final String CONTENT_TYPE = "text/event-stream; charset=UTF-8";
+
+    private final int replayCapacity;
+    private final Event[] replay;
+    private final ConcurrentMap<XnioIoThread, ConnectionGroup> groups = new ConcurrentHashMap<>();
+    private long nextId = 1;
+    private volatile long keepAliveMillis;
+
+    public SsePublisher(int replayCapacity) {
+        this.replayCapacity = replayCapacity;
+        this.replay = new Event[Math.max(replayCapacity, 1)];
+    }
+
+    /**
+     * Sets the keep-alive interval for connections made from now on; 0 disables keep-alives.
+     */
+    public void setKeepAliveMillis(long keepAliveMillis) {
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    /**
+     * Publishes an event to every connected client and keeps it for replay.
+     *
+     * @param event
+     *         event name, or null for the default "message" event.
+     * @return the event id.
+     */
+    public long publish(String event, String data) {
+        Event published;
+        synchronized (this) {
+            // Encoded before taking the id, so rejected data leaves no gap in the ids.
+            published = new Event(nextId, encode(nextId, event, data));
+            long id = nextId++;
+            if (replayCapacity > 0) {
+                replay[(int) (id % replayCapacity)] = published;
+            }
+        }
+        for (ConnectionGroup group : groups.values()) {
+            group.enqueue(published);
+        }
+        return published.id;
+    }
+
+    /**
+     * Runs the action for every connected client, from the calling thread.
+     */
+    public void forEachConnection(Consumer<SseConnection> action) {
+        groups.values()
+                .forEach(group -> group.connections.forEach(action));
+    }
+
+    public int getConnectionCount() {
+        int count = 0;
+        for (ConnectionGroup group : groups.values()) {
+            count += group.connections.size();
+        }
+        return count;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) {
+        exchange.getResponseHeaders()
+                .put(Headers.CONTENT_TYPE, CONTENT_TYPE)
+                .put(Headers.CACHE_CONTROL, "no-cache");
+        exchange.setPersistent(false);
+        long lastEventId = parseLastEventId(exchange.getRequestHeaders()
+                .getFirst(LAST_EVENT_ID));
+        // Dispatching keeps the exchange open after the handler chain returns.
+        exchange.dispatch(SameThreadExecutor.INSTANCE, () -> connect(exchange, lastEventId));
+    }
+
+    private void connect(HttpServerExchange exchange, long lastEventId) {
+        StreamSinkChannel sink = exchange.getResponseChannel();
+        ConnectionGroup group = groups.computeIfAbsent(exchange.getIoThread(), ConnectionGroup::new);
+        SseConnection connection = new SseConnection(exchange, sink, Math.max(replayCapacity, 16), group.connections::remove);
+        List<Event> missed;
+        synchronized (this) {
+            group.connections.add(connection);
+            missed = eventsAfter(lastEventId);
+        }
+        // Tracked per stream, not per connection: under HTTP/2 one connection carries many streams.
+        sink.getCloseSetter()
+                .set(channel -> connection.closed());
+        exchange.addExchangeCompleteListener((completed, nextListener) -> {
+            connection.closed();
+            nextListener.proceed();
+        });
+        missed.forEach(connection::queue);
+        connection.flush();
+    }
+
+    /**
+     * Events the client has not seen. A client without Last-Event-ID is new and gets nothing; one with an id that is too old
+     * or unknown (e.g. from before a restart) gets everything still kept.
+     */
+    private List<Event> eventsAfter(long lastEventId) {
+        long newest = nextId - 1;
+        if (lastEventId < 0 || lastEventId == newest || replayCapacity == 0) {
+            return Collections.emptyList();
+        }
+        long oldest = Math.max(1, newest - replayCapacity + 1);
+        long from = lastEventId >= oldest - 1 && lastEventId < newest ? lastEventId + 1 : oldest;
+        List<Event> events = new ArrayList<>((int) (newest - from + 1));
+        for (long id = from; id <= newest; id++) {
+            events.add(replay[(int) (id % replayCapacity)]);
+        }
+        return events;
+    }
+
+    private static long parseLastEventId(String header) {
+        if (header == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Encodes an event in the text/event-stream format, splitting multi-line data into one data field per line. An id of 0
+     * is left out.
+     */
+    static ByteBuffer encode(long id, String event, String data) {
+        if (data == null) {
+            throw new IllegalArgumentException("SSE data must not be null, send \"\" for an event without data");
+        }
+        StringBuilder sb = new StringBuilder(data.length() + 32);
+        if (id > 0) {
+            sb.append("id: ")
+                    .append(id)
+                    .append('\n');
+        }
+        if (event != null) {
+            sb.append("event: ")
+                    .append(event)
+                    .append('\n');
+        }
+        int start = 0;
+        for (int i = 0; i <= data.length(); i++) {
+            char c = i < data.length() ? data.charAt(i) : '\n';
+            if (c == '\n' || c == '\r') {
+                sb.append("data: ")
+                        .append(data, start, i)
+                        .append('\n');
+                if (c == '\r' && i + 1 < data.length() && data.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                start = i + 1;
+            }
+        }
+        sb.append('\n');
+        return ByteBuffer.wrap(sb.toString()
+                .getBytes(StandardCharsets.UTF_8))
+                .asReadOnlyBuffer();
+    }
+
+    static class Event {
+        final long id;
+        final ByteBuffer data;
+
+        private Event(long id, ByteBuffer data) {
+            this.id = id;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Connections owned by one IO thread, with the events waiting to be written to them and the keep-alive timer.
+     */
+    private class ConnectionGroup implements Runnable {
+        private final XnioIoThread ioThread;
+        private final Set<SseConnection> connections = ConcurrentHashMap.newKeySet();
+        private final Queue<Event> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final long keepAliveNanos;
+
+        private ConnectionGroup(XnioIoThread ioThread) {
+            this.ioThread = ioThread;
+            this.keepAliveNanos = TimeUnit.MILLISECONDS.toNanos(keepAliveMillis);
+            scheduleKeepAlive();
+        }
+
+        private void enqueue(Event event) {
+            pending.add(event);
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    ioThread.execute(this);
+                } catch (RejectedExecutionException e) {
+                    LOGGER.warn("IO thread rejected SSE publish, dropping queued events");
+                    pending.clear();
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            scheduled.set(false);
+            Event event;
+            boolean queued = false;
+            while ((event = pending.poll()) != null) {
+                for (SseConnection connection : connections) {
+                    connection.queue(event);
+                }
+                queued = true;
+            }
+            if (queued) {
+                connections.forEach(SseConnection::flush);
+            }
+        }
+
+        private void scheduleKeepAlive() {
+            if (keepAliveNanos <= 0) {
+                return;
+            }
+            try {
+                // Checking twice per interval keeps a connection from going more than 1.5 intervals without a write.
+                ioThread.executeAfter(this::keepAlive, keepAliveNanos / 2, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                LOGGER.debug("IO thread stopped, SSE keep-alives stopped");
+            }
+        }
+
+        private void keepAlive() {
+            long now = System.nanoTime();
+            for (SseConnection connection : connections) {
+                connection.keepAliveIfIdle(now, keepAliveNanos);
+            }
+            scheduleKeepAlive();
+        }
+    }
+}
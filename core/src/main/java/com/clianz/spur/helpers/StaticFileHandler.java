@@ -0,0 +1,85 @@
+package com.clianz.spur.helpers;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Deque;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.cache.DirectBufferCache;
+import io.undertow.server.handlers.resource.CachingResourceManager;
+import io.undertow.server.handlers.resource.PathResourceManager;
+import io.undertow.server.handlers.resource.PreCompressedResourceSupplier;
+import io.undertow.server.handlers.resource.ResourceHandler;
+import io.undertow.server.handlers.resource.ResourceManager;
+
+/**
+ * Serves the files of one directory under a URL prefix, built from Undertow's resource handling:
+ * <ul>
+ * <li>files above {@link #TRANSFER_MIN_SIZE} go out with FileChannel.transferTo, i.e. sendfile on plain HTTP;</li>
+ * <li>small files are kept in a byte-bounded cache of direct buffers, which also avoids the copy over HTTPS;</li>
+ * <li>metadata is cached and, when watching, invalidated by file system events rather than stat'd per request;</li>
+ * <li>Range, ETag/Last-Modified and precompressed .br/.gz siblings are handled by the resource handler.</li>
+ * </ul>
+ */
+public class StaticFileHandler implements HttpHandler {
+
+    private static final long TRANSFER_MIN_SIZE = 16L * 1024L;
+    private static final int METADATA_CACHE_SIZE = 1024;
+    private static final int UNWATCHED_MAX_AGE_MILLIS = 2000;
+    private static final int CACHE_SLICE_SIZE = 1024;
+    private static final int CACHE_SLICES_PER_PAGE = 64;
+
+    private final ResourceHandler resourceHandler;
+
+    /**
+     * The handler serves whatever the route's wildcard matched, so it must be registered under {@link #routeFor(String)}.
+     */
+    public StaticFileHandler(Path directory, long memoryCacheBytes, long maxCachedFileSize, boolean watchForChanges,
+            boolean precompressed, Integer cacheControlMaxAge, String... welcomeFiles) {
+        if (!Files.isDirectory(directory)) {
+            throw new IllegalArgumentException("Static file directory does not exist: " + directory.toAbsolutePath());
+        }
+
+        ResourceManager files = new PathResourceManager(directory.toAbsolutePath(), TRANSFER_MIN_SIZE, true, false, watchForChanges);
+        DirectBufferCache dataCache = memoryCacheBytes > 0
+                ? new DirectBufferCache(CACHE_SLICE_SIZE, CACHE_SLICES_PER_PAGE, (int) Math.min(memoryCacheBytes, Integer.MAX_VALUE))
+                : null;
+        ResourceManager cached = new CachingResourceManager(METADATA_CACHE_SIZE, maxCachedFileSize, dataCache, files,
+                watchForChanges ? -1 : UNWATCHED_MAX_AGE_MILLIS);
+
+        this.resourceHandler = precompressed
+                ? new ResourceHandler(new PreCompressedResourceSupplier(cached).addEncoding("br", ".br")
+                        .addEncoding("gzip", ".gz"))
+                : new ResourceHandler(cached);
+        resourceHandler.setWelcomeFiles(welcomeFiles)
+                .setCacheTime(cacheControlMaxAge);
+    }
+
+    /**
+     * @param urlPrefix
+     *         normalized prefix without a trailing slash, "" for the root.
+     * @return the route template covering every path under the prefix.
+     */
+    public static String routeFor(String urlPrefix) {
+        return urlPrefix + "/*";
+    }
+
+    public static String normalizePrefix(String urlPrefix) {
+        String prefix = urlPrefix.startsWith("/") ? urlPrefix : "/" + urlPrefix;
+        while (prefix.endsWith("/")) {
+            prefix = prefix.substring(0, prefix.length() - 1);
+        }
+        return prefix;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        // The remainder as the trie matched it, repeated slashes and all; cutting the prefix's length off the raw path would
+        // split "//static/app.js" in the wrong place. The trie's value is added last, after any "*" from the query string.
+        Deque<String> remainder = exchange.getQueryParameters()
+                .get(RouteTrie.WILDCARD);
+        exchange.setRelativePath("/" + (remainder == null ? "" : remainder.getLast()));
+        resourceHandler.handleRequest(exchange);
+    }
+}
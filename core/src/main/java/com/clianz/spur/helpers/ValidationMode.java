@@ -0,0 +1,10 @@
+package com.clianz.spur.helpers;
+
+public enum ValidationMode {
+    /** Validate every constraint and report all violations. */
+    ENABLED,
+    /** Stop at the first violation. */
+    FAIL_FAST,
+    /** Never validate the request body. */
+    DISABLED
+}
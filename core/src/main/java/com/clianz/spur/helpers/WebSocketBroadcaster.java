@@ -0,0 +1,342 @@
+package com.clianz.spur.helpers;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.jboss.logging.Logger;
+import org.xnio.XnioIoThread;
+
+import io.undertow.connector.ByteBufferPool;
+import io.undertow.connector.PooledByteBuffer;
+import io.undertow.websockets.core.WebSocketCallback;
+import io.undertow.websockets.core.WebSocketChannel;
+
+/**
+ * Sends text messages to every websocket connected on one path.
+ * <p>
+ * Channels are grouped by the IO thread that owns them. A broadcast encodes the message once into a pooled buffer and queues
+ * it on every group; each IO thread is woken at most once per burst and passes all queued messages to its channels'
+ * {@link OutboundQueue}s, each send reading a duplicate of the shared buffer. Each channel is flushed once per burst. The
+ * buffer goes back to the pool when the last send has finished or been dropped, which is also when the returned future
+ * completes.
+ * <p>
+ * Each group also indexes its channels by subscribed topic, so a topic broadcast only visits the topic's subscribers.
+ */
+public class WebSocketBroadcaster {
+
+    private static final Logger LOGGER = Logger.getLogger(WebSocketBroadcaster.class.getName());
+    private static final int MAX_UTF8_BYTES_PER_CHAR = 3;
+
+    private final ConcurrentMap<XnioIoThread, ChannelGroup> groups = new ConcurrentHashMap<>();
+    private final long highWatermark;
+    private final long lowWatermark;
+    private final OverflowPolicy overflowPolicy;
+    private volatile ByteBufferPool bufferPool;
+
+    /**
+     * @param highWatermark
+     *         outbound bytes a single connection may have queued before the overflow policy applies.
+     * @param lowWatermark
+     *         queued bytes at which a congested connection accepts messages again.
+     */
+    public WebSocketBroadcaster(long highWatermark, long lowWatermark, OverflowPolicy overflowPolicy) {
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Registers a new connection.
+     *
+     * @return the connection's outbound queue, which all its sends should go through.
+     */
+    public OutboundQueue add(WebSocketChannel channel) {
+        if (bufferPool == null) {
+            bufferPool = channel.getBufferPool();
+        }
+        OutboundQueue queue = new OutboundQueue(channel, highWatermark, lowWatermark, overflowPolicy);
+        groups.computeIfAbsent(channel.getIoThread(), ChannelGroup::new).channels.put(channel, queue);
+        channel.addCloseTask(this::remove);
+        return queue;
+    }
+
+    public void remove(WebSocketChannel channel) {
+        ChannelGroup group = groups.get(channel.getIoThread());
+        if (group != null) {
+            OutboundQueue queue = group.channels.remove(channel);
+            if (queue == null) {
+                return;
+            }
+            Set<String> topics = group.subscriptions.remove(channel);
+            if (topics != null) {
+                topics.forEach(topic -> group.unsubscribe(topic, queue));
+            }
+            queue.close();
+        }
+    }
+
+    /**
+     * @return true if the channel was not already subscribed to the topic.
+     */
+    public boolean subscribe(WebSocketChannel channel, String topic) {
+        ChannelGroup group = groups.get(channel.getIoThread());
+        OutboundQueue queue = group == null ? null : group.channels.get(channel);
+        if (queue == null || !group.subscriptions.computeIfAbsent(channel, key -> ConcurrentHashMap.newKeySet())
+                .add(topic)) {
+            return false;
+        }
+        group.subscribe(topic, queue);
+        if (!group.channels.containsKey(channel)) {
+            // Lost a race with the close task, which has already cleaned up.
+            group.unsubscribe(topic, queue);
+            group.subscriptions.remove(channel);
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the channel was subscribed to the topic.
+     */
+    public boolean unsubscribe(WebSocketChannel channel, String topic) {
+        ChannelGroup group = groups.get(channel.getIoThread());
+        Set<String> topics = group == null ? null : group.subscriptions.get(channel);
+        OutboundQueue queue = group == null ? null : group.channels.get(channel);
+        if (topics == null || queue == null || !topics.remove(topic)) {
+            return false;
+        }
+        group.unsubscribe(topic, queue);
+        return true;
+    }
+
+    /**
+     * @return topics the channel is subscribed to.
+     */
+    public Set<String> getTopics(WebSocketChannel channel) {
+        ChannelGroup group = groups.get(channel.getIoThread());
+        Set<String> topics = group == null ? null : group.subscriptions.get(channel);
+        return topics == null ? Collections.emptySet() : Collections.unmodifiableSet(topics);
+    }
+
+    /**
+     * @return number of connected channels.
+     */
+    public int size() {
+        int size = 0;
+        for (ChannelGroup group : groups.values()) {
+            size += group.channels.size();
+        }
+        return size;
+    }
+
+    public CompletableFuture<BroadcastResult> broadcast(String msg) {
+        return broadcast(msg, null);
+    }
+
+    /**
+     * Sends the message to every channel accepted by the filter (all channels if null). The filter runs on each channel's IO
+     * thread.
+     */
+    public CompletableFuture<BroadcastResult> broadcast(String msg, Predicate<WebSocketChannel> filter) {
+        Frame frame = encode(msg, null, filter);
+        for (ChannelGroup group : groups.values()) {
+            frame.retain();
+            group.enqueue(frame);
+        }
+        frame.release();
+        return frame.result;
+    }
+
+    /**
+     * Sends the message to the channels subscribed to the topic. Only IO threads that own a subscriber are woken, and only
+     * subscribers are visited.
+     */
+    public CompletableFuture<BroadcastResult> broadcastToTopic(String topic, String msg) {
+        Frame frame = null;
+        for (ChannelGroup group : groups.values()) {
+            if (group.topics.containsKey(topic)) {
+                if (frame == null) {
+                    frame = encode(msg, topic, null);
+                }
+                frame.retain();
+                group.enqueue(frame);
+            }
+        }
+        if (frame == null) {
+            return CompletableFuture.completedFuture(new BroadcastResult(0, 0));
+        }
+        frame.release();
+        return frame.result;
+    }
+
+    private Frame encode(String msg, String topic, Predicate<WebSocketChannel> filter) {
+        ByteBufferPool pool = bufferPool;
+        if (pool != null && (long) msg.length() * MAX_UTF8_BYTES_PER_CHAR <= pool.getBufferSize()) {
+            PooledByteBuffer pooled = pool.allocate();
+            ByteBuffer buffer = pooled.getBuffer();
+            buffer.clear();
+            CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            encoder.encode(CharBuffer.wrap(msg), buffer, true);
+            encoder.flush(buffer);
+            buffer.flip();
+            return new Frame(pooled, buffer, topic, filter);
+        }
+        return new Frame(null, ByteBuffer.wrap(msg.getBytes(StandardCharsets.UTF_8)), topic, filter);
+    }
+
+    /**
+     * An encoded message shared by all its sends. Holds one reference per queued group and per started send, plus one for the
+     * broadcasting caller until every group has been queued.
+     */
+    private static class Frame implements WebSocketCallback<Void> {
+        private final PooledByteBuffer pooled;
+        private final ByteBuffer data;
+        private final String topic;
+        private final Predicate<WebSocketChannel> filter;
+        private final AtomicInteger references = new AtomicInteger(1);
+        private final AtomicInteger delivered = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final CompletableFuture<BroadcastResult> result = new CompletableFuture<>();
+
+        private Frame(PooledByteBuffer pooled, ByteBuffer data, String topic, Predicate<WebSocketChannel> filter) {
+            this.pooled = pooled;
+            this.data = data;
+            this.topic = topic;
+            this.filter = filter;
+        }
+
+        private void retain() {
+            references.incrementAndGet();
+        }
+
+        private void release() {
+            if (references.decrementAndGet() == 0) {
+                if (pooled != null) {
+                    pooled.close();
+                }
+                result.complete(new BroadcastResult(delivered.get(), failed.get()));
+            }
+        }
+
+        private void sendTo(OutboundQueue queue) {
+            retain();
+            queue.sendText(data.duplicate(), this);
+        }
+
+        @Override
+        public void complete(WebSocketChannel channel, Void context) {
+            delivered.incrementAndGet();
+            release();
+        }
+
+        @Override
+        public void onError(WebSocketChannel channel, Void context, Throwable throwable) {
+            failed.incrementAndGet();
+            release();
+        }
+    }
+
+    /**
+     * Channels owned by one IO thread, plus the frames waiting to be written to them. Draining always happens on that IO
+     * thread, so frames reach each channel in broadcast order.
+     */
+    private static class ChannelGroup implements Runnable {
+        private final XnioIoThread ioThread;
+        private final ConcurrentMap<WebSocketChannel, OutboundQueue> channels = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Set<OutboundQueue>> topics = new ConcurrentHashMap<>();
+        private final ConcurrentMap<WebSocketChannel, Set<String>> subscriptions = new ConcurrentHashMap<>();
+        private final Queue<Frame> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private ChannelGroup(XnioIoThread ioThread) {
+            this.ioThread = ioThread;
+        }
+
+        private void subscribe(String topic, OutboundQueue queue) {
+            topics.compute(topic, (key, subscribers) -> {
+                Set<OutboundQueue> set = subscribers == null ? ConcurrentHashMap.newKeySet() : subscribers;
+                set.add(queue);
+                return set;
+            });
+        }
+
+        private void unsubscribe(String topic, OutboundQueue queue) {
+            topics.computeIfPresent(topic, (key, subscribers) -> {
+                subscribers.remove(queue);
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+        }
+
+        private void enqueue(Frame frame) {
+            pending.add(frame);
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    ioThread.execute(this);
+                } catch (RejectedExecutionException e) {
+                    LOGGER.warn("IO thread rejected websocket broadcast, dropping queued messages");
+                    scheduled.set(false);
+                    Frame dropped;
+                    while ((dropped = pending.poll()) != null) {
+                        dropped.release();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Writes the burst's frames with explicit flushing on, so Undertow only queues them, then flushes each channel once:
+         * all frames a channel got in the burst leave in one gathering write instead of one write each.
+         */
+        @Override
+        public void run() {
+            scheduled.set(false);
+            Set<WebSocketChannel> written = new HashSet<>();
+            try {
+                Frame frame;
+                while ((frame = pending.poll()) != null) {
+                    try {
+                        Collection<OutboundQueue> recipients = frame.topic == null ? channels.values() : topics.get(frame.topic);
+                        if (recipients == null) {
+                            continue;
+                        }
+                        for (OutboundQueue queue : recipients) {
+                            WebSocketChannel channel = queue.getChannel();
+                            if (queue.isOpen() && (frame.filter == null || frame.filter.test(channel))) {
+                                if (written.add(channel)) {
+                                    channel.setRequireExplicitFlush(true);
+                                }
+                                frame.sendTo(queue);
+                            }
+                        }
+                    } catch (RuntimeException e) {
+                        LOGGER.error("Websocket broadcast failed: " + e.getMessage(), e);
+                    } finally {
+                        frame.release();
+                    }
+                }
+            } finally {
+                for (WebSocketChannel channel : written) {
+                    channel.setRequireExplicitFlush(false);
+                    channel.flush();
+                }
+            }
+        }
+    }
+}
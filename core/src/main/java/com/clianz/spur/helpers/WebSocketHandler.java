@@ -4,6 +4,9 @@ public class WebSocketHandler {
     private String path;
     private WebSocketOnConnect webSocketOnConnect;
     private WebSocketOnMessage webSocketOnMessage;
+    private WebSocketOnBinaryMessage webSocketOnBinaryMessage;
+    private WebSocketOnBinaryChunk webSocketOnBinaryChunk;
+    private long maxMessageSize = -1;
 
     public WebSocketHandler(String path, WebSocketOnConnect webSocketOnConnect, WebSocketOnMessage webSocketOnMessage) {
         this.path = path;
@@ -22,4 +25,31 @@ public class WebSocketHandler {
     public WebSocketOnMessage getWebSocketOnMessage() {
         return webSocketOnMessage;
     }
+
+    public WebSocketOnBinaryMessage getWebSocketOnBinaryMessage() {
+        return webSocketOnBinaryMessage;
+    }
+
+    public void setWebSocketOnBinaryMessage(WebSocketOnBinaryMessage webSocketOnBinaryMessage) {
+        this.webSocketOnBinaryMessage = webSocketOnBinaryMessage;
+    }
+
+    public WebSocketOnBinaryChunk getWebSocketOnBinaryChunk() {
+        return webSocketOnBinaryChunk;
+    }
+
+    public void setWebSocketOnBinaryChunk(WebSocketOnBinaryChunk webSocketOnBinaryChunk) {
+        this.webSocketOnBinaryChunk = webSocketOnBinaryChunk;
+    }
+
+    /**
+     * @return largest inbound message in bytes, or -1 for no limit.
+     */
+    public long getMaxMessageSize() {
+        return maxMessageSize;
+    }
+
+    public void setMaxMessageSize(long maxMessageSize) {
+        this.maxMessageSize = maxMessageSize;
+    }
 }
@@ -1,15 +1,23 @@
 package com.clianz.spur.helpers;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
+import io.undertow.websockets.core.WebSocketCallback;
 import io.undertow.websockets.core.WebSocketChannel;
-import io.undertow.websockets.core.WebSockets;
 
 public class WebSocketMessageSender {
     WebSocketChannel channel;
+    private final WebSocketBroadcaster broadcaster;
+    private final OutboundQueue outboundQueue;
 
-    public WebSocketMessageSender(WebSocketChannel channel) {
+    public WebSocketMessageSender(WebSocketChannel channel, WebSocketBroadcaster broadcaster, OutboundQueue outboundQueue) {
         this.channel = channel;
+        this.broadcaster = broadcaster;
+        this.outboundQueue = outboundQueue;
     }
 
     public void send() {
@@ -18,16 +26,55 @@ public class WebSocketMessageSender {
 
     public void send(String msg) {
         if (msg != null) {
-            WebSockets.sendText(msg, channel, null);
+            outboundQueue.sendText(ByteBuffer.wrap(msg.getBytes(StandardCharsets.UTF_8)), null);
         }
     }
 
     public void send(ByteBuffer byteBuffer) {
         if (byteBuffer != null) {
-            WebSockets.sendBinary(byteBuffer, channel, null);
+            outboundQueue.sendBinary(byteBuffer, null);
         }
     }
 
+    /**
+     * @return completes once the message is written, or exceptionally if the write failed or the outbound queue dropped it.
+     */
+    public CompletionStage<Void> sendAsync(String msg) {
+        FutureCallback callback = new FutureCallback();
+        outboundQueue.sendText(ByteBuffer.wrap(msg.getBytes(StandardCharsets.UTF_8)), callback);
+        return callback;
+    }
+
+    /**
+     * @return completes once the message is written, or exceptionally if the write failed or the outbound queue dropped it.
+     */
+    public CompletionStage<Void> sendAsync(ByteBuffer byteBuffer) {
+        FutureCallback callback = new FutureCallback();
+        outboundQueue.sendBinary(byteBuffer, callback);
+        return callback;
+    }
+
+    /**
+     * @return bytes waiting to be written to this connection.
+     */
+    public long getQueuedBytes() {
+        return outboundQueue.getQueuedBytes();
+    }
+
+    /**
+     * @return messages waiting to be written to this connection.
+     */
+    public int getQueuedMessages() {
+        return outboundQueue.getQueuedMessages();
+    }
+
+    /**
+     * @return messages to this connection dropped by the outbound queue's overflow policy.
+     */
+    public long getDroppedMessages() {
+        return outboundQueue.getDroppedMessages();
+    }
+
     public boolean setChannelAttribute(String key, Object value) {
         return channel.setAttribute(key, value);
     }
@@ -35,4 +82,37 @@ public class WebSocketMessageSender {
     public Object getChannelAttribute(String key) {
         return channel.getAttribute(key);
     }
+
+    /**
+     * Subscribes this connection to a topic (e.g. a chat room), so it receives SpurServer.broadcastToTopic messages for it.
+     * Subscriptions end when the connection closes.
+     *
+     * @return true if not already subscribed.
+     */
+    public boolean subscribe(String topic) {
+        return broadcaster.subscribe(channel, topic);
+    }
+
+    /**
+     * @return true if this connection was subscribed to the topic.
+     */
+    public boolean unsubscribe(String topic) {
+        return broadcaster.unsubscribe(channel, topic);
+    }
+
+    public Set<String> getSubscriptions() {
+        return broadcaster.getTopics(channel);
+    }
+
+    private static class FutureCallback extends CompletableFuture<Void> implements WebSocketCallback<Void> {
+        @Override
+        public void complete(WebSocketChannel channel, Void context) {
+            complete(null);
+        }
+
+        @Override
+        public void onError(WebSocketChannel channel, Void context, Throwable throwable) {
+            completeExceptionally(throwable);
+        }
+    }
 }
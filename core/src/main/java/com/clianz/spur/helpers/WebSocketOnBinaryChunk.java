@@ -0,0 +1,12 @@
+package com.clianz.spur.helpers;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Handles a binary message piece by piece as it is read off the connection. The chunk buffer is pooled and only valid until
+ * this method returns. The final call for each message has last set and an empty chunk.
+ */
+@FunctionalInterface
+public interface WebSocketOnBinaryChunk {
+    void onChunk(ByteBuffer chunk, boolean last, WebSocketMessageSender res);
+}
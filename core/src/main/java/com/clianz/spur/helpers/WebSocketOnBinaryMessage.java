@@ -0,0 +1,12 @@
+package com.clianz.spur.helpers;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Handles a complete binary message. The buffers are pooled and only valid until this method returns; copy anything that
+ * needs to outlive the call.
+ */
+@FunctionalInterface
+public interface WebSocketOnBinaryMessage {
+    void onMessage(ByteBuffer[] data, WebSocketMessageSender res);
+}
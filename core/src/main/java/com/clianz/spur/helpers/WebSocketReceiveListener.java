@@ -0,0 +1,137 @@
+package com.clianz.spur.helpers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.jboss.logging.Logger;
+import org.xnio.ChannelListener;
+import org.xnio.IoUtils;
+import org.xnio.Pooled;
+
+import io.undertow.connector.PooledByteBuffer;
+import io.undertow.websockets.core.AbstractReceiveListener;
+import io.undertow.websockets.core.BufferedBinaryMessage;
+import io.undertow.websockets.core.BufferedTextMessage;
+import io.undertow.websockets.core.CloseMessage;
+import io.undertow.websockets.core.StreamSourceFrameChannel;
+import io.undertow.websockets.core.WebSocketChannel;
+import io.undertow.websockets.core.WebSockets;
+
+/**
+ * Dispatches inbound messages of one connection to the handlers registered for its path.
+ * <p>
+ * Text messages are buffered into a String. Binary messages are either buffered and handed over in the pooled buffers they
+ * were read into, or, with a chunk handler, streamed through one pooled buffer as they arrive. Binary messages are ignored
+ * when neither handler is set.
+ */
+public class WebSocketReceiveListener extends AbstractReceiveListener {
+
+    private static final Logger LOGGER = Logger.getLogger(WebSocketReceiveListener.class.getName());
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final WebSocketHandler webSocketHandler;
+    private final WebSocketMessageSender sender;
+
+    public WebSocketReceiveListener(WebSocketHandler webSocketHandler, WebSocketMessageSender sender) {
+        this.webSocketHandler = webSocketHandler;
+        this.sender = sender;
+    }
+
+    @Override
+    protected void onFullTextMessage(WebSocketChannel channel, BufferedTextMessage message) {
+        webSocketHandler.getWebSocketOnMessage()
+                .onMessage(message.getData(), sender);
+    }
+
+    @Override
+    protected void onBinary(WebSocketChannel webSocketChannel, StreamSourceFrameChannel messageChannel) throws IOException {
+        if (webSocketHandler.getWebSocketOnBinaryChunk() != null) {
+            new ChunkReader(webSocketChannel).handleEvent(messageChannel);
+        } else {
+            super.onBinary(webSocketChannel, messageChannel);
+        }
+    }
+
+    @Override
+    protected void onFullBinaryMessage(WebSocketChannel channel, BufferedBinaryMessage message) {
+        Pooled<ByteBuffer[]> data = message.getData();
+        try {
+            if (webSocketHandler.getWebSocketOnBinaryMessage() != null) {
+                webSocketHandler.getWebSocketOnBinaryMessage()
+                        .onMessage(data.getResource(), sender);
+            }
+        } finally {
+            data.free();
+        }
+    }
+
+    @Override
+    protected long getMaxTextBufferSize() {
+        return webSocketHandler.getMaxMessageSize();
+    }
+
+    @Override
+    protected long getMaxBinaryBufferSize() {
+        return webSocketHandler.getMaxMessageSize();
+    }
+
+    /**
+     * Reads one binary message through a single pooled buffer, handing each read to the chunk handler. Suspends on the message
+     * channel when no data is available, so it never blocks the IO thread.
+     */
+    private class ChunkReader implements ChannelListener<StreamSourceFrameChannel> {
+        private final WebSocketChannel webSocketChannel;
+        private long received;
+
+        private ChunkReader(WebSocketChannel webSocketChannel) {
+            this.webSocketChannel = webSocketChannel;
+        }
+
+        @Override
+        public void handleEvent(StreamSourceFrameChannel messageChannel) {
+            WebSocketOnBinaryChunk onChunk = webSocketHandler.getWebSocketOnBinaryChunk();
+            long maxMessageSize = webSocketHandler.getMaxMessageSize();
+            PooledByteBuffer pooled = webSocketChannel.getBufferPool()
+                    .allocate();
+            try {
+                ByteBuffer buffer = pooled.getBuffer();
+                while (true) {
+                    buffer.clear();
+                    int read = messageChannel.read(buffer);
+                    if (read == 0) {
+                        messageChannel.getReadSetter()
+                                .set(this);
+                        messageChannel.resumeReads();
+                        return;
+                    } else if (read == -1) {
+                        messageChannel.getReadSetter()
+                                .set(null);
+                        messageChannel.close();
+                        onChunk.onChunk(EMPTY, true, sender);
+                        return;
+                    }
+                    received += read;
+                    if (maxMessageSize > 0 && received > maxMessageSize) {
+                        tooBig(messageChannel);
+                        return;
+                    }
+                    buffer.flip();
+                    onChunk.onChunk(buffer, false, sender);
+                }
+            } catch (IOException e) {
+                LOGGER.debug("Websocket binary read failed: " + e.getMessage(), e);
+                IoUtils.safeClose(messageChannel, webSocketChannel);
+            } finally {
+                pooled.close();
+            }
+        }
+
+        private void tooBig(StreamSourceFrameChannel messageChannel) {
+            messageChannel.getReadSetter()
+                    .set(null);
+            WebSockets.sendClose(new CloseMessage(CloseMessage.MSG_TOO_BIG, "Message too big").toByteBuffer(), webSocketChannel,
+                    null);
+            IoUtils.safeClose(messageChannel);
+        }
+    }
+}
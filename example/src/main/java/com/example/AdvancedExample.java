@@ -77,7 +77,7 @@ public class AdvancedExample {
                 .isPresent(), res -> res.status(StatusCodes.FORBIDDEN)
                 .send());
 
-        server.start(new SpurOptions().enableGzip(true)
+        server.start(new SpurOptions().enableCompression(true)
                 .enableCorsHeaders("*")
 //                .enableBlockableHandlers(false)
 //                .enableHttps(true)